@@ -17,6 +17,7 @@
 package com.visural.wicket.examples;
 
 import com.visural.wicket.aturl.AtAnnotation;
+import com.visural.wicket.component.codebox.CodeBoxResources;
 import com.visural.wicket.util.lesscss.LessCSSResourceStreamLocator;
 import org.apache.wicket.protocol.http.WebApplication;
 
@@ -41,6 +42,7 @@ public class ExamplesApplication extends WebApplication {
         getResourceSettings().setResourcePollFrequency(null);
         getResourceSettings().setResourceStreamLocator(new LessCSSResourceStreamLocator());
         getDebugSettings().setOutputComponentPath(true);
+        CodeBoxResources.installBundle(this);
     }
 //
 //    @Override
@@ -17,21 +17,26 @@
 package com.visural.wicket.behavior.dateinput;
 
 import com.visural.common.StringUtil;
+import com.visural.common.datastruct.LRUCache;
+import com.visural.wicket.util.ContentDigest;
 import java.text.DateFormatSymbols;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.apache.wicket.Component;
 import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
 import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 
@@ -42,14 +47,30 @@ import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
  *
  *   * Requires JQuery
  *   * Month and day names will be picked up from bound component's `Locale`
+ *
+ * Month and day names are looked up once per locale, and the options of
+ * behaviors using only a locale and date format are shared application-wide.
+ * The options are registered once per page, and each input is marked with a
+ * class derived from its options, so all inputs on the page with identical
+ * options - whether they share a behavior instance or not - are initialised by
+ * a single script.
  * 
  * @author Richard Nichols
  */
 public class DateInputBehavior extends Behavior {
     private static final long serialVersionUID = 1L;
     
-    private Set<Component> bound = new HashSet<Component>();
     private Map<String,String> optionMap = new HashMap<String,String>();
+    private Locale locale = null;
+    private DateInputFormat format = null;
+    private boolean customNames = false;
+    private transient String optionLiteral = null;
+    private transient String optionKey = null;
+
+    // month and day name options by locale
+    private static final ConcurrentMap<Locale, Map<String, String>> LOCALE_NAMES = new ConcurrentHashMap<Locale, Map<String, String>>();
+    // option literals by locale and date format
+    private static final Map<String, String> SHARED_OPTIONS = new LRUCache<String, String>(256);
 
     public DateInputBehavior() {
     }
@@ -66,7 +87,6 @@ public class DateInputBehavior extends Behavior {
     @Override
     public void bind(Component component) {
         setLocale(component.getLocale());
-        bound.add(component);
         component.setOutputMarkupId(true);
     }
 
@@ -76,36 +96,69 @@ public class DateInputBehavior extends Behavior {
         	response.render(CssHeaderItem.forReference(new DateInputCSSRef()));
         	response.render(JavaScriptReferenceHeaderItem.forReference(new DateInputJSRef()));
         }
-        response.render(OnDomReadyHeaderItem.forScript(getJS()));
+        String options = getOptionLiteral();
+        String key = getOptionKey();
+        response.render(JavaScriptHeaderItem.forScript("(window.VISURALDateInputOptions = window.VISURALDateInputOptions || {})['"
+                + key + "'] = " + options + ";", "VISURALDateInput" + key));
+        // identical for every input with these options, so rendered only once
+        response.render(OnDomReadyHeaderItem.forScript(getJS(key)));
     }
 
-    private String getJS() {
-        StringBuilder js = new StringBuilder();
-        for (Component com : bound) {
-            js.append("jQuery(\"#")
-              .append(com.getMarkupId())
-              .append("\").date_input(")
-              .append(getOptionMap())
-              .append(");");
-        }
-        return js.toString();
+    @Override
+    public void onComponentTag(Component component, ComponentTag tag) {
+        tag.append("class", getInputClass(getOptionKey()), " ");
+    }
+
+    private static String getInputClass(String key) {
+        return "visural-di-" + key;
+    }
+
+    private static String getJS(String key) {
+        // inputs already initialised are skipped, e.g. when a single input is
+        // re-rendered via Ajax
+        String selector = "." + getInputClass(key);
+        return "jQuery('" + selector + ":not(.visural-di-init)').addClass('visural-di-init')"
+                + ".date_input(window.VISURALDateInputOptions['" + key + "']);";
     }
 
     private void setLocale(Locale locale) {
+        this.locale = locale;
+        optionLiteral = null;
+        optionKey = null;
         if (!locale.getLanguage().equalsIgnoreCase("en")) {
+            optionMap.putAll(getLocaleNames(locale));
+        } else if (!customNames) {
+            optionMap.keySet().removeAll(Arrays.asList("month_names", "short_month_names", "short_day_names"));
+        }
+    }
+
+    private Map<String, String> getLocaleNames(Locale locale) {
+        Map<String, String> names = LOCALE_NAMES.get(locale);
+        if (names == null) {
             DateFormatSymbols dfs = DateFormatSymbols.getInstance(locale);
-            setMonthNames(initCap(Arrays.asList(dfs.getMonths())));
-            setShortMonthNames(initCap(Arrays.asList(dfs.getShortMonths())));
             String[] wkdays = dfs.getShortWeekdays();
-            setShortDayNames(initCap(Arrays.asList(wkdays[Calendar.SUNDAY],
+            names = new HashMap<String, String>();
+            names.put("month_names", toJSArray(initCap(Arrays.asList(dfs.getMonths()))));
+            names.put("short_month_names", toJSArray(initCap(Arrays.asList(dfs.getShortMonths()))));
+            names.put("short_day_names", toJSArray(initCap(Arrays.asList(wkdays[Calendar.SUNDAY],
                     wkdays[Calendar.MONDAY],
                     wkdays[Calendar.TUESDAY],
                     wkdays[Calendar.WEDNESDAY],
                     wkdays[Calendar.THURSDAY],
                     wkdays[Calendar.FRIDAY],
                     wkdays[Calendar.SATURDAY]
-                    )));
+                    ))));
+            names = Collections.unmodifiableMap(names);
+            Map<String, String> existing = LOCALE_NAMES.putIfAbsent(locale, names);
+            if (existing != null) {
+                names = existing;
+            }
         }
+        return names;
+    }
+
+    private static String toJSArray(Collection<String> values) {
+        return "[\""+StringUtil.delimitObjectsToString("\",\"", values)+"\"]";
     }
 
     private String initCap(String s) {
@@ -131,6 +184,9 @@ public class DateInputBehavior extends Behavior {
      * @return
      */
     public DateInputBehavior setDateFormat(DateInputFormat format) {
+        this.format = format;
+        optionLiteral = null;
+        optionKey = null;
         if (StringUtil.isNotBlankStr(format.getStrToDate())) {
             optionMap.put("stringToDate", format.getStrToDate());
         } else {
@@ -150,7 +206,10 @@ public class DateInputBehavior extends Behavior {
      * @return
      */
     public DateInputBehavior setMonthNames(Collection<String> months) {
-        optionMap.put("month_names", "[\""+StringUtil.delimitObjectsToString("\",\"", months)+"\"]");
+        optionMap.put("month_names", toJSArray(months));
+        customNames = true;
+        optionLiteral = null;
+        optionKey = null;
         return this;
     }
 
@@ -160,7 +219,10 @@ public class DateInputBehavior extends Behavior {
      * @return
      */
     public DateInputBehavior setShortMonthNames(Collection<String> months) {
-        optionMap.put("short_month_names", "[\""+StringUtil.delimitObjectsToString("\",\"", months)+"\"]");
+        optionMap.put("short_month_names", toJSArray(months));
+        customNames = true;
+        optionLiteral = null;
+        optionKey = null;
         return this;
     }
 
@@ -170,10 +232,41 @@ public class DateInputBehavior extends Behavior {
      * @return
      */
     public DateInputBehavior setShortDayNames(Collection<String> days) {
-        optionMap.put("short_day_names", "[\""+StringUtil.delimitObjectsToString("\",\"", days)+"\"]");
+        optionMap.put("short_day_names", toJSArray(days));
+        customNames = true;
+        optionLiteral = null;
+        optionKey = null;
         return this;
     }
 
+    private String getOptionLiteral() {
+        if (optionLiteral == null) {
+            if (customNames || locale == null) {
+                optionLiteral = getOptionMap();
+            } else {
+                // options are fully determined by the locale and format, so share them
+                String key = locale.toString() + "|" + (format == null ? "" : format.name());
+                synchronized (SHARED_OPTIONS) {
+                    optionLiteral = SHARED_OPTIONS.get(key);
+                    if (optionLiteral == null) {
+                        optionLiteral = getOptionMap();
+                        SHARED_OPTIONS.put(key, optionLiteral);
+                    }
+                }
+            }
+            optionKey = "d" + ContentDigest.sha1(optionLiteral);
+        }
+        return optionLiteral;
+    }
+
+    /**
+     * @return the key of the option literal, which is derived along with it
+     */
+    private String getOptionKey() {
+        getOptionLiteral();
+        return optionKey;
+    }
+
     private String getOptionMap() {
         StringBuffer sb = new StringBuffer("{");
         boolean first = true;
@@ -16,51 +16,32 @@
  */
 package com.visural.wicket.behavior.jsr303;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Map;
-import org.apache.wicket.validation.IValidatable;
-import org.apache.wicket.validation.IValidationError;
-import org.apache.wicket.validation.ValidationError;
-import org.apache.wicket.validation.validator.DateValidator;
+import com.visural.wicket.util.IClock;
 
 /**
  * Validates that a Date must occur in the future
  * @version $Id$
  * @author Richard Nichols
  */
-public class FutureValidator extends DateValidator {
+public class FutureValidator extends RelativeDateValidator {
 
     private static final long serialVersionUID = 1L;
-    private final String format;
 
     public FutureValidator(String format) {
-        this.format = format;
+        super(format);
     }
 
-//    @Override
-//    protected Map<String, Object> variablesMap(IValidatable<Date> validatable) {
-//        final Map<String, Object> map = super.variablesMap(validatable);
-//        if (format == null) {
-//            map.put("inputdate", validatable.getValue());
-//        } else {
-//            SimpleDateFormat sdf = new SimpleDateFormat(format);
-//            map.put("inputdate", sdf.format(validatable.getValue()));
-//        }
-//        return map;
-//    }
+    public FutureValidator(String format, IClock clock) {
+        super(format, clock);
+    }
 
-//    @Override
-//    protected String resourceKey() {
-//        return "DateValidator.future";
-//    }
+    @Override
+    protected boolean isValid(long value, long now) {
+        return value >= now;
+    }
 
     @Override
-    public void validate(IValidatable<Date> validatable) {
-    	Date value = validatable.getValue();
-        if (value.before(new Date())) {
-        	IValidationError error= new ValidationError("Date is not in the future");
-			validatable.error(error);
-        }
+    protected String resourceKey() {
+        return "DateValidator.future";
     }
 }
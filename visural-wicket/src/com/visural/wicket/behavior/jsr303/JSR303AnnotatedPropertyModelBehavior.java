@@ -34,6 +34,8 @@ import org.apache.wicket.validation.validator.PatternValidator;
 import org.apache.wicket.validation.validator.RangeValidator;
 import org.apache.wicket.validation.validator.StringValidator;
 
+import com.visural.wicket.util.IClock;
+import com.visural.wicket.util.SystemClock;
 import com.sun.org.apache.xml.internal.utils.StringVector;
 
 /**
@@ -115,11 +117,19 @@ public class JSR303AnnotatedPropertyModelBehavior extends Behavior {
     }
 
     protected IValidator newFutureValidator() {
-        return new FutureValidator(null);
+        return new FutureValidator(null, getClock());
     }
 
     protected IValidator newPastValidator() {
-        return new PastValidator(null);
+        return new PastValidator(null, getClock());
+    }
+
+    /**
+     * The clock used by the default @Past and @Future validators. Override
+     * to supply a fixed clock for testing.
+     */
+    protected IClock getClock() {
+        return SystemClock.INSTANCE;
     }
 
     protected IValidator newPatternValidator(String regexp) {
@@ -16,52 +16,32 @@
  */
 package com.visural.wicket.behavior.jsr303;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Map;
-import org.apache.wicket.validation.IValidatable;
-import org.apache.wicket.validation.IValidationError;
-import org.apache.wicket.validation.ValidationError;
-import org.apache.wicket.validation.validator.DateValidator;
+import com.visural.wicket.util.IClock;
 
 /**
  * Validates that a date must occur in the past
  * @version $Id$
  * @author Richard Nichols
  */
-public class PastValidator extends DateValidator {
+public class PastValidator extends RelativeDateValidator {
 
     private static final long serialVersionUID = 1L;
-    private final String format;
 
     public PastValidator(String format) {
-        this.format = format;
+        super(format);
     }
 
-//    @Override
-//    protected Map<String, Object> variablesMap(IValidatable<Date> validatable) {
-//        final Map<String, Object> map = super.variablesMap(validatable);
-//        if (format == null) {
-//            map.put("inputdate", validatable.getValue());
-//        } else {
-//            SimpleDateFormat sdf = new SimpleDateFormat(format);
-//            map.put("inputdate", sdf.format(validatable.getValue()));
-//        }
-//        return map;
-//    }
-//
-//    @Override
-//    protected String resourceKey() {
-//        return "DateValidator.past";
-//    }
+    public PastValidator(String format, IClock clock) {
+        super(format, clock);
+    }
+
+    @Override
+    protected boolean isValid(long value, long now) {
+        return value <= now;
+    }
 
-    
     @Override
-    public void validate(IValidatable<Date> validatable) {
-    	Date value = validatable.getValue();
-        if (value.after(new Date())) {
-        	IValidationError error = new ValidationError("Dat is not in the past");
-			validatable.error(error);
-        }
+    protected String resourceKey() {
+        return "DateValidator.past";
     }
 }
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.behavior.jsr303;
+
+import com.visural.common.apacherepack.FastDateFormat;
+import com.visural.wicket.util.IClock;
+import com.visural.wicket.util.SystemClock;
+import java.util.Date;
+import java.util.Locale;
+import org.apache.wicket.Session;
+import org.apache.wicket.validation.IValidatable;
+import org.apache.wicket.validation.ValidationError;
+import org.apache.wicket.validation.validator.DateValidator;
+
+/**
+ * Base class for validators which check a date against the current time, as
+ * supplied by an {@link IClock}.
+ *
+ * The comparison itself is done on raw millisecond values, so a successful
+ * validation does not allocate. On failure the error is raised against
+ * `resourceKey()` with the variable `${inputdate}`, being the value formatted
+ * with `format` (or the locale's medium date format if `format` is null).
+ * Formatters are thread-safe and shared per format and locale.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public abstract class RelativeDateValidator extends DateValidator {
+
+    private static final long serialVersionUID = 1L;
+    private final String format;
+    private final IClock clock;
+
+    public RelativeDateValidator(String format) {
+        this(format, SystemClock.INSTANCE);
+    }
+
+    public RelativeDateValidator(String format, IClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock may not be null");
+        }
+        this.format = format;
+        this.clock = clock;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public IClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public void validate(IValidatable<Date> validatable) {
+        Date value = validatable.getValue();
+        if (value != null && !isValid(value.getTime(), clock.currentTimeMillis())) {
+            ValidationError error = new ValidationError();
+            error.addKey(resourceKey());
+            error.setVariable("inputdate", formatDate(value));
+            validatable.error(error);
+        }
+    }
+
+    /**
+     * @param value the date being validated, in milliseconds
+     * @param now the current time according to the clock, in milliseconds
+     * @return true if the value is acceptable
+     */
+    protected abstract boolean isValid(long value, long now);
+
+    /**
+     * @return the resource key of the error message raised on failure
+     */
+    protected abstract String resourceKey();
+
+    /**
+     * Formats the date for display in the error message.
+     * @param value
+     * @return
+     */
+    protected String formatDate(Date value) {
+        Locale locale = getLocale();
+        if (format == null) {
+            return FastDateFormat.getDateInstance(FastDateFormat.MEDIUM, locale).format(value);
+        } else {
+            return FastDateFormat.getInstance(format, locale).format(value);
+        }
+    }
+
+    /**
+     * Returns the session locale when called within a request, otherwise the
+     * JVM default.
+     * @return
+     */
+    protected Locale getLocale() {
+        return Session.exists() ? Session.get().getLocale() : Locale.getDefault();
+    }
+}
@@ -27,6 +27,7 @@ import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebComponent;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.Model;
+import org.apache.wicket.util.convert.IConverter;
 
 import com.google.prettify.ExtraJSResourceReference;
 import com.google.prettify.PrettifyCSSResourceReference;
@@ -47,6 +48,18 @@ import com.visural.wicket.security.ISecureRenderInstance;
  *
  * Apply to a `<pre>` or `<code>` block.
  *
+ * Highlighting is normally done in the browser. For pages with many snippets,
+ * `setServerSideHighlighting(true)` highlights model-provided code on the server
+ * instead, via {@link CodeBoxHighlighter} (which caches the output for each
+ * distinct snippet), so that no prettify JavaScript need run at all.
+ *
+ * For very large blocks of code, `setIncrementalHighlighting(lines)` instead
+ * renders the code in chunks of the given number of lines, and highlights each
+ * chunk in the browser only as it scrolls into view.
+ *
+ * To serve prettify and all language extensions as a single resource, see
+ * {@link CodeBoxResources#installBundle(org.apache.wicket.Application)}.
+ *
  * @version $Id: CodeBox.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
@@ -55,6 +68,8 @@ public class CodeBox extends WebComponent implements Serializable, ISecureEnable
     private static final long serialVersionUID = 1L;
     private boolean displayLineNumbers = false;
     private CodeBoxLanguage languageOverride = null;
+    private boolean serverSideHighlighting = false;
+    private int incrementalHighlighting = 0;
 
     /**
      * Create a Codebox with static content with the given `id`.
@@ -91,16 +106,53 @@ public class CodeBox extends WebComponent implements Serializable, ISecureEnable
         return true;
     }
 
+    /**
+     * Returns the highlighter used when server side highlighting is enabled.
+     * By default this is the shared {@link CodeBoxHighlighter#getDefault()}.
+     * @return
+     */
+    protected CodeBoxHighlighter getHighlighter() {
+        return CodeBoxHighlighter.getDefault();
+    }
+
     @Override
     public void renderHead(IHeaderResponse response) {
+        boolean highlightOnServer = isHighlightedOnServer();
         if (autoAddToHeader()) {
         	response.render(CssHeaderItem.forReference(new PrettifyCSSResourceReference()));
-        	response.render(JavaScriptReferenceHeaderItem.forReference(new PrettifyJSResourceReference()));
+            if (!highlightOnServer) {
+                response.render(JavaScriptReferenceHeaderItem.forReference(new PrettifyJSResourceReference()));
+            }
         }
-        if (getLanguageOverride() != null && getLanguageOverride().getExtraJSfile() != null) {
-        	response.render(JavaScriptReferenceHeaderItem.forReference(new ExtraJSResourceReference(getLanguageOverride())));
+        if (!highlightOnServer) {
+            if (getLanguageOverride() != null && getLanguageOverride().getExtraJSfile() != null) {
+                response.render(JavaScriptReferenceHeaderItem.forReference(new ExtraJSResourceReference(getLanguageOverride())));
+            }
+            if (isHighlightedIncrementally()) {
+                response.render(JavaScriptReferenceHeaderItem.forReference(new CodeBoxIncrementalJSRef()));
+                String lang = getLanguageOverride() == null ? "null"
+                        : "'" + getLanguageOverride().getCSSClass().substring("lang-".length()) + "'";
+                response.render(OnDomReadyHeaderItem.forScript("VisuralCodeBox.init('" + getMarkupId() + "', " + lang + ");"));
+            } else {
+                response.render(OnDomReadyHeaderItem.forScript("prettyPrint()"));
+            }
         }
-        response.render(OnDomReadyHeaderItem.forScript("prettyPrint()"));
+    }
+
+    /**
+     * Server side highlighting only applies to code provided by the model -
+     * static markup content is still highlighted in the browser.
+     */
+    private boolean isHighlightedOnServer() {
+        return isServerSideHighlighting() && getDefaultModelObject() != null;
+    }
+
+    /**
+     * As with server side highlighting, only model-provided code may be
+     * highlighted incrementally.
+     */
+    private boolean isHighlightedIncrementally() {
+        return getIncrementalHighlighting() > 0 && !isServerSideHighlighting() && getDefaultModelObject() != null;
     }
 
     @Override
@@ -111,41 +163,44 @@ public class CodeBox extends WebComponent implements Serializable, ISecureEnable
             findMarkupStream().throwMarkupException(
                     "Component " + getId() + " must be applied to a tag of type 'code' or 'pre', not " + tag.toUserDebugString());
         }
-        // change display class
+        // change display class - "prettyprinted" stops prettify from reprocessing server highlighted code
+        String cssClass = isHighlightedOnServer() || isHighlightedIncrementally() ? "prettyprint prettyprinted" : "prettyprint";
         if (getLanguageOverride() == null) {
-            tag.put("class", "prettyprint");
+            tag.put("class", cssClass);
         } else {
-            tag.put("class", "prettyprint " + getLanguageOverride().getCSSClass());
+            tag.put("class", cssClass + " " + getLanguageOverride().getCSSClass());
         }
     }
 
     @Override
     public void onComponentTagBody(final MarkupStream markupStream, final ComponentTag openTag) {
-        String code = this.getDefaultModelObjectAsString();
+        String code = getModelCode();
         if (code != null) {
-            if (isDisplayLineNumbers()) {
-                code = formatLineNumbers(code);
+            boolean highlightOnServer = isHighlightedOnServer();
+            if (highlightOnServer) {
+                code = getHighlighter().highlight(code, getLanguageOverride());
             }
-            replaceComponentTagBody(markupStream, openTag, code);
+            // discard the markup body, then stream the code straight to the response
+            replaceComponentTagBody(markupStream, openTag, null);
+            new CodeBoxBodyWriter(getResponse()).write(code,
+                    !highlightOnServer && getEscapeModelStrings(), isDisplayLineNumbers(),
+                    isHighlightedIncrementally() ? getIncrementalHighlighting() : 0);
         } else {
             super.onComponentTagBody(markupStream, openTag);
         }
     }
 
-    private String formatLineNumbers(String code) {
-        StringBuilder codeWithLines = new StringBuilder(code.length() * 2);
-        String[] lines = code.split("\n");
-        int numPlaces = Integer.toString(lines.length).length();
-        int lineNo = 1;
-        for (String line : lines) {
-            codeWithLines.append("<span class=\"nocode\">");
-            codeWithLines.append(rightJustifyAndPad(lineNo++, numPlaces));
-            codeWithLines.append(":</span> ");
-            codeWithLines.append(line);
-            codeWithLines.append('\n');
+    /**
+     * @return the unescaped, converted model object, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    private String getModelCode() {
+        Object modelObject = getDefaultModelObject();
+        if (modelObject == null) {
+            return null;
         }
-        code = codeWithLines.toString();
-        return code;
+        IConverter<Object> converter = (IConverter<Object>) getConverter(modelObject.getClass());
+        return converter.convertToString(modelObject, getLocale());
     }
 
     public boolean isDisplayLineNumbers() {
@@ -178,13 +233,48 @@ public class CodeBox extends WebComponent implements Serializable, ISecureEnable
         return this;
     }
 
-    private String rightJustifyAndPad(int lineNo, int places) {
-        StringBuilder result = new StringBuilder(places);
-        result.append(lineNo);
-        while (result.length() < places) {
-            result.insert(0, ' ');
+    public boolean isServerSideHighlighting() {
+        return serverSideHighlighting;
+    }
+
+    /**
+     * Toggle server side syntax highlighting of model-provided code. When
+     * enabled, the prettify JavaScript is not contributed for this box.
+     *
+     * @param serverSideHighlighting
+     * @return
+     */
+    public CodeBox setServerSideHighlighting(boolean serverSideHighlighting) {
+        this.serverSideHighlighting = serverSideHighlighting;
+        return this;
+    }
+
+    public int getIncrementalHighlighting() {
+        return incrementalHighlighting;
+    }
+
+    /**
+     * Highlight model-provided code in the browser incrementally, in chunks of
+     * the given number of lines, as each chunk scrolls into view. Pass zero
+     * (the default) to highlight the whole box at once. Ignored when server side
+     * highlighting is enabled.
+     *
+     * Each chunk is highlighted on its own, so a token which spans a chunk
+     * boundary - e.g. a multi-line comment or string - is highlighted as if it
+     * ended (or started) there, and the code following it may be highlighted
+     * wrongly up to the end of that chunk. Choose a chunk size which is large
+     * relative to such tokens, or use server side highlighting where they are
+     * common.
+     *
+     * @param chunkLines
+     * @return
+     */
+    public CodeBox setIncrementalHighlighting(int chunkLines) {
+        this.incrementalHighlighting = chunkLines;
+        if (chunkLines > 0) {
+            setOutputMarkupId(true);
         }
-        return result.toString();
+        return this;
     }
 
     public IPrivilege getRenderPrivilege() {
@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2009 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.codebox;
+
+import org.apache.wicket.request.Response;
+
+/**
+ * Writes the body of a {@link CodeBox} to the response in a single pass,
+ * optionally escaping markup and prefixing line numbers as it goes, so large
+ * snippets are never split into line arrays or copied into intermediate strings.
+ * Output is written in bounded chunks.
+ *
+ * Lines may also be grouped into `<span class="cbchunk">` elements, which the
+ * incremental highlighting script highlights as they scroll into view. Chunks
+ * are split purely by line count, without regard to the tokens of the code.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+final class CodeBoxBodyWriter {
+
+    private static final int CHUNK_SIZE = 8192;
+    private final Response response;
+    private final StringBuilder buffer = new StringBuilder(CHUNK_SIZE + 64);
+
+    CodeBoxBodyWriter(Response response) {
+        this.response = response;
+    }
+
+    /**
+     * @param code the code to write
+     * @param escape whether to escape markup characters in the code
+     * @param lineNumbers whether to prefix each line with its number
+     */
+    void write(CharSequence code, boolean escape, boolean lineNumbers) {
+        write(code, escape, lineNumbers, 0);
+    }
+
+    /**
+     * @param code the code to write
+     * @param escape whether to escape markup characters in the code
+     * @param lineNumbers whether to prefix each line with its number
+     * @param chunkLines if greater than zero, the number of lines to group in
+     *                   each chunk element
+     */
+    void write(CharSequence code, boolean escape, boolean lineNumbers, int chunkLines) {
+        if (lineNumbers || chunkLines > 0) {
+            writeLines(code, escape, lineNumbers, chunkLines);
+        } else {
+            append(code, 0, code.length(), escape);
+        }
+        flush();
+    }
+
+    private void writeLines(CharSequence code, boolean escape, boolean lineNumbers, int chunkLines) {
+        // trailing line breaks are dropped, as per String.split()
+        int end = code.length();
+        while (end > 0 && code.charAt(end - 1) == '\n') {
+            end--;
+        }
+        int lineCount = end == 0 ? (code.length() == 0 ? 1 : 0) : 1;
+        for (int n = 0; n < end; n++) {
+            if (code.charAt(n) == '\n') {
+                lineCount++;
+            }
+        }
+        int places = digits(lineCount);
+        int lineNo = 1;
+        int lineStart = 0;
+        while (lineNo <= lineCount) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && code.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (chunkLines > 0 && (lineNo - 1) % chunkLines == 0) {
+                buffer.append("<span class=\"cbchunk\">");
+            }
+            if (lineNumbers) {
+                buffer.append("<span class=\"nocode\">");
+                for (int pad = digits(lineNo); pad < places; pad++) {
+                    buffer.append(' ');
+                }
+                buffer.append(lineNo).append(":</span> ");
+            }
+            append(code, lineStart, lineEnd, escape);
+            buffer.append('\n');
+            if (chunkLines > 0 && (lineNo % chunkLines == 0 || lineNo == lineCount)) {
+                buffer.append("</span>");
+            }
+            lineStart = lineEnd + 1;
+            lineNo++;
+        }
+    }
+
+    private void append(CharSequence code, int start, int end, boolean escape) {
+        for (int n = start; n < end; n++) {
+            char c = code.charAt(n);
+            if (escape) {
+                switch (c) {
+                    case '<':
+                        buffer.append("&lt;");
+                        break;
+                    case '>':
+                        buffer.append("&gt;");
+                        break;
+                    case '&':
+                        buffer.append("&amp;");
+                        break;
+                    case '"':
+                        buffer.append("&quot;");
+                        break;
+                    case '\'':
+                        buffer.append("&#039;");
+                        break;
+                    default:
+                        buffer.append(c);
+                }
+            } else {
+                buffer.append(c);
+            }
+            if (buffer.length() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+    }
+
+    private void flush() {
+        if (buffer.length() > 0) {
+            response.write(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    private static int digits(int n) {
+        int result = 1;
+        while (n >= 10) {
+            n /= 10;
+            result++;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,570 @@
+/*
+ *  Copyright 2009 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.codebox;
+
+import com.visural.wicket.util.ContentDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A server-side syntax highlighter for {@link CodeBox}, which emits HTML
+ * marked up with the same `<span class="...">` token classes as prettify, so
+ * the standard prettify stylesheet applies.
+ *
+ * The tokeniser is deliberately simple - it recognises comments, strings,
+ * numbers, keywords, types and punctuation for each family of
+ * {@link CodeBoxLanguage}s, and tags / attributes for markup languages. Where
+ * no language is given, a generic C-like syntax is assumed.
+ *
+ * Output is HTML escaped, and no span ever crosses a line break, so the output
+ * may be split by line (e.g. to add line numbers).
+ *
+ * Highlighted output is kept in an LRU cache keyed by language and a digest of
+ * the code, so each distinct snippet is only highlighted once per JVM. The cache
+ * is bounded by the total characters of output it holds, and output larger than
+ * an eighth of that bound is never cached. Use `getDefault()` for the shared,
+ * application-wide instance.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public class CodeBoxHighlighter {
+
+    public static final int DEFAULT_CACHE_CHARS = 4 * 1024 * 1024;
+    private static final CodeBoxHighlighter DEFAULT = new CodeBoxHighlighter(DEFAULT_CACHE_CHARS);
+    private final int maxCacheChars;
+    private final Map<String, String> cache = new LinkedHashMap<String, String>(16, 0.75f, true);
+    private int cacheChars = 0;
+
+    /**
+     * @param maxCacheChars the maximum total characters of highlighted output
+     *                      to cache
+     */
+    public CodeBoxHighlighter(int maxCacheChars) {
+        this.maxCacheChars = maxCacheChars;
+    }
+
+    /**
+     * @return the shared instance used by {@link CodeBox} by default
+     */
+    public static CodeBoxHighlighter getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the highlighted (and escaped) HTML for the given code, from the
+     * cache if available.
+     *
+     * @param code raw, unescaped source code
+     * @param language the language, or null for a generic C-like syntax
+     * @return
+     */
+    public String highlight(String code, CodeBoxLanguage language) {
+        String key = cacheKey(code, language);
+        String result;
+        synchronized (cache) {
+            result = cache.get(key);
+        }
+        if (result == null) {
+            StringBuilder out = new StringBuilder(code.length() + code.length() / 2);
+            highlight(code, language, out);
+            result = out.toString();
+            if (result.length() <= maxCacheChars / 8) {
+                cache(key, result);
+            }
+        }
+        return result;
+    }
+
+    private void cache(String key, String result) {
+        synchronized (cache) {
+            String old = cache.put(key, result);
+            cacheChars += result.length() - (old == null ? 0 : old.length());
+            // least recently used first
+            for (Iterator<String> it = cache.values().iterator(); cacheChars > maxCacheChars && it.hasNext();) {
+                cacheChars -= it.next().length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Highlights the code, without caching, appending the result.
+     *
+     * @param code raw, unescaped source code
+     * @param language the language, or null for a generic C-like syntax
+     * @param out
+     */
+    public void highlight(CharSequence code, CodeBoxLanguage language, StringBuilder out) {
+        Syntax syntax = Syntax.forLanguage(language);
+        if (syntax.markup) {
+            new MarkupLexer(code, out).run();
+        } else {
+            new CodeLexer(code, syntax, out).run();
+        }
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+            cacheChars = 0;
+        }
+    }
+
+    private String cacheKey(String code, CodeBoxLanguage language) {
+        return ContentDigest.sha1((language == null ? "" : language.name()) + ":" + code);
+    }
+
+    private static final String COM = "com";
+    private static final String STR = "str";
+    private static final String KWD = "kwd";
+    private static final String TYP = "typ";
+    private static final String LIT = "lit";
+    private static final String PUN = "pun";
+    private static final String TAG = "tag";
+    private static final String ATN = "atn";
+    private static final String ATV = "atv";
+    private static final String DEC = "dec";
+
+    /**
+     * Appends `code[start, end)` escaped and wrapped in a span of the given
+     * class (or unwrapped if the class is null), closing and reopening the
+     * span around line breaks.
+     */
+    private static void emit(CharSequence code, int start, int end, String cssClass, StringBuilder out) {
+        if (start >= end) {
+            return;
+        }
+        if (cssClass != null) {
+            out.append("<span class=\"").append(cssClass).append("\">");
+        }
+        for (int n = start; n < end; n++) {
+            char c = code.charAt(n);
+            switch (c) {
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '\n':
+                    if (cssClass != null) {
+                        out.append("</span>\n");
+                        if (n + 1 < end) {
+                            out.append("<span class=\"").append(cssClass).append("\">");
+                        } else {
+                            return;
+                        }
+                    } else {
+                        out.append('\n');
+                    }
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+        if (cssClass != null) {
+            out.append("</span>");
+        }
+    }
+
+    private static boolean startsWith(CharSequence code, int pos, String s) {
+        if (pos + s.length() > code.length()) {
+            return false;
+        }
+        for (int n = 0; n < s.length(); n++) {
+            if (code.charAt(pos + n) != s.charAt(n)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence code, String s, int from) {
+        for (int n = from; n <= code.length() - s.length(); n++) {
+            if (startsWith(code, n, s)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    private static Set<String> words(String words) {
+        return new HashSet<String>(Arrays.asList(words.split(" ")));
+    }
+
+    private static final Set<String> C_KEYWORDS = words(
+            "abstract assert auto boolean break byte case catch char class const continue debugger default "
+            + "delete do double else enum export extends extern false final finally float for function goto if "
+            + "implements import in instanceof int interface let long namespace native new null operator "
+            + "package private protected public register return short signed sizeof static struct super switch "
+            + "synchronized template this throw throws transient true try typedef typeof union unsigned using "
+            + "var virtual void volatile while with yield");
+    private static final Set<String> CSHARP_KEYWORDS = words(
+            "abstract as base bool break byte case catch char checked class const continue decimal default "
+            + "delegate do double else enum event explicit extern false finally fixed float for foreach goto if "
+            + "implicit in int interface internal is lock long namespace new null object operator out override "
+            + "params private protected public readonly ref return sbyte sealed short sizeof stackalloc static "
+            + "string struct switch this throw true try typeof uint ulong unchecked unsafe ushort using virtual "
+            + "void volatile while var");
+    private static final Set<String> HASH_KEYWORDS = words(
+            "and as assert begin break case class continue def defined del do done elif else elsif end ensure "
+            + "esac except exec export fi finally for foreach from function global if import in is lambda last "
+            + "local module my next nil not or our package pass print raise redo rescue retry return self sub "
+            + "then True False None unless until use while with yield");
+    private static final Set<String> SQL_KEYWORDS = words(
+            "add all alter and any as asc begin between by case check column commit constraint create cross "
+            + "database default delete desc distinct drop else end exists foreign from full group having if in "
+            + "index inner insert into is join key left like limit not null on or order outer primary "
+            + "procedure references right rollback select set table then top truncate union unique update "
+            + "values view when where with");
+    private static final Set<String> LISP_KEYWORDS = words(
+            "and begin case cond def defconst defmacro defparameter defun defvar define do else if lambda let "
+            + "let* letrec loop nil not or progn quote set! setf setq t unless when");
+    private static final Set<String> HASKELL_KEYWORDS = words(
+            "case class data default deriving do else forall if import in infix infixl infixr instance let "
+            + "module newtype of then type where");
+    private static final Set<String> LUA_KEYWORDS = words(
+            "and break do else elseif end false for function if in local nil not or repeat return then true "
+            + "until while");
+    private static final Set<String> PROTO_KEYWORDS = words(
+            "bool bytes default double enum extend extensions false fixed32 fixed64 float group import int32 "
+            + "int64 max message option optional package repeated required returns rpc service sfixed32 "
+            + "sfixed64 sint32 sint64 string syntax to true uint32 uint64");
+    private static final Set<String> VB_KEYWORDS = words(
+            "and as boolean byref byte byval call case catch class const dim do double each else elseif end "
+            + "enum error exit false finally for function get goto handles if implements imports in inherits "
+            + "integer interface is let long loop me mod module new next not nothing object of on option or "
+            + "private property protected public redim resume return select set shared single static step "
+            + "string structure sub then throw to true try until variant wend while with");
+    private static final Set<String> ML_KEYWORDS = words(
+            "abstract and as assert begin class default delegate do done downcast downto elif else end "
+            + "exception extern false finally for fun function if in inherit inline interface internal lazy let "
+            + "match member module mutable namespace new null of open or override private public rec return "
+            + "sig static struct then to true try type upcast use val void when while with yield");
+    private static final Set<String> NO_KEYWORDS = new HashSet<String>();
+
+    /**
+     * Lexical description of a family of languages.
+     */
+    private static final class Syntax {
+
+        private static final Syntax C_LIKE = new Syntax(C_KEYWORDS, new String[]{"//"}, new String[]{"/*", "*/"}, "\"'`", true, true, false);
+        private static final Syntax CSHARP = new Syntax(CSHARP_KEYWORDS, new String[]{"//"}, new String[]{"/*", "*/"}, "\"'", true, true, false);
+        private static final Syntax CSS = new Syntax(NO_KEYWORDS, new String[0], new String[]{"/*", "*/"}, "\"'", true, false, false);
+        private static final Syntax HASH = new Syntax(HASH_KEYWORDS, new String[]{"#"}, new String[0], "\"'`", true, true, false);
+        private static final Syntax SQL = new Syntax(SQL_KEYWORDS, new String[]{"--"}, new String[]{"/*", "*/"}, "\"'", false, false, true);
+        private static final Syntax LISP = new Syntax(LISP_KEYWORDS, new String[]{";"}, new String[0], "\"", true, false, false);
+        private static final Syntax HASKELL = new Syntax(HASKELL_KEYWORDS, new String[]{"--"}, new String[]{"{-", "-}"}, "\"", true, true, false);
+        private static final Syntax LUA = new Syntax(LUA_KEYWORDS, new String[]{"--"}, new String[]{"--[[", "]]"}, "\"'", true, false, false);
+        private static final Syntax PROTO = new Syntax(PROTO_KEYWORDS, new String[]{"//"}, new String[]{"/*", "*/"}, "\"'", true, true, false);
+        private static final Syntax VB = new Syntax(VB_KEYWORDS, new String[]{"'", "REM "}, new String[0], "\"", false, false, true);
+        private static final Syntax ML = new Syntax(ML_KEYWORDS, new String[]{"//"}, new String[]{"(*", "*)"}, "\"", true, true, false);
+        private static final Syntax PLAIN = new Syntax(NO_KEYWORDS, new String[0], new String[0], "", false, false, false);
+        private static final Syntax MARKUP = new Syntax();
+        private final Set<String> keywords;
+        private final String[] lineComments;
+        private final String[] blockComments;
+        private final String quotes;
+        private final boolean backslashEscapes;
+        private final boolean capitalizedTypes;
+        private final boolean caseInsensitive;
+        private final boolean markup;
+
+        private Syntax(Set<String> keywords, String[] lineComments, String[] blockComments, String quotes,
+                boolean backslashEscapes, boolean capitalizedTypes, boolean caseInsensitive) {
+            this.keywords = keywords;
+            this.lineComments = lineComments;
+            this.blockComments = blockComments;
+            this.quotes = quotes;
+            this.backslashEscapes = backslashEscapes;
+            this.capitalizedTypes = capitalizedTypes;
+            this.caseInsensitive = caseInsensitive;
+            this.markup = false;
+        }
+
+        private Syntax() {
+            this.keywords = NO_KEYWORDS;
+            this.lineComments = new String[0];
+            this.blockComments = new String[0];
+            this.quotes = "";
+            this.backslashEscapes = false;
+            this.capitalizedTypes = false;
+            this.caseInsensitive = false;
+            this.markup = true;
+        }
+
+        private static Syntax forLanguage(CodeBoxLanguage language) {
+            if (language == null) {
+                return C_LIKE;
+            }
+            switch (language) {
+                case COMMON_LISP:
+                case EMACS_LISP:
+                case LISP:
+                case SCHEME:
+                    return LISP;
+                case CSS:
+                    return CSS;
+                case HASKELL:
+                    return HASKELL;
+                case LUA:
+                    return LUA;
+                case PROTOCOL_BUFFERS:
+                    return PROTO;
+                case SQL:
+                    return SQL;
+                case VISUAL_BASIC:
+                case VB_SCRIPT:
+                    return VB;
+                case F_SHARP:
+                case ML:
+                    return ML;
+                case HTML:
+                case XML:
+                case XSL:
+                case XHTML:
+                    return MARKUP;
+                case BASH:
+                case PERL:
+                case PYTHON:
+                case RUBY:
+                case SHELL:
+                    return HASH;
+                case CSHARP:
+                    return CSHARP;
+                case GOOGLE_WIKI:
+                case APOLLO:
+                    return PLAIN;
+                default:
+                    return C_LIKE;
+            }
+        }
+    }
+
+    /**
+     * Tokeniser for programming languages.
+     */
+    private static final class CodeLexer {
+
+        private final CharSequence code;
+        private final Syntax syntax;
+        private final StringBuilder out;
+        private final int length;
+        private int pos = 0;
+
+        private CodeLexer(CharSequence code, Syntax syntax, StringBuilder out) {
+            this.code = code;
+            this.syntax = syntax;
+            this.out = out;
+            this.length = code.length();
+        }
+
+        private void run() {
+            int plainStart = 0;
+            while (pos < length) {
+                int start = pos;
+                String cssClass = next();
+                if (cssClass != null) {
+                    emit(code, plainStart, start, null, out);
+                    emit(code, start, pos, cssClass, out);
+                    plainStart = pos;
+                }
+            }
+            emit(code, plainStart, length, null, out);
+        }
+
+        /**
+         * Consumes one token, returning its class, or null if it is plain.
+         */
+        private String next() {
+            char c = code.charAt(pos);
+            for (int n = 0; n < syntax.blockComments.length; n += 2) {
+                if (startsWith(code, pos, syntax.blockComments[n])) {
+                    int end = indexOf(code, syntax.blockComments[n + 1], pos + syntax.blockComments[n].length());
+                    pos = end < 0 ? length : end + syntax.blockComments[n + 1].length();
+                    return COM;
+                }
+            }
+            for (String lc : syntax.lineComments) {
+                if (startsWith(code, pos, lc)) {
+                    while (pos < length && code.charAt(pos) != '\n') {
+                        pos++;
+                    }
+                    return COM;
+                }
+            }
+            if (syntax.quotes.indexOf(c) >= 0) {
+                readString(c);
+                return STR;
+            }
+            if (Character.isDigit(c) || (c == '.' && pos + 1 < length && Character.isDigit(code.charAt(pos + 1)))) {
+                while (pos < length && (Character.isLetterOrDigit(code.charAt(pos)) || code.charAt(pos) == '.' || code.charAt(pos) == '_')) {
+                    pos++;
+                }
+                return LIT;
+            }
+            if (isIdentifierStart(c)) {
+                int start = pos;
+                while (pos < length && isIdentifierPart(code.charAt(pos))) {
+                    pos++;
+                }
+                String word = code.subSequence(start, pos).toString();
+                if (syntax.keywords.contains(syntax.caseInsensitive ? word.toLowerCase() : word)) {
+                    return KWD;
+                } else if (syntax.capitalizedTypes && Character.isUpperCase(c)) {
+                    return TYP;
+                }
+                return null;
+            }
+            if (Character.isWhitespace(c)) {
+                while (pos < length && Character.isWhitespace(code.charAt(pos))) {
+                    pos++;
+                }
+                return null;
+            }
+            pos++;
+            return PUN;
+        }
+
+        private void readString(char quote) {
+            String triple = new String(new char[]{quote, quote, quote});
+            if (syntax == Syntax.HASH && startsWith(code, pos, triple)) {
+                int end = indexOf(code, triple, pos + 3);
+                pos = end < 0 ? length : end + 3;
+                return;
+            }
+            pos++;
+            while (pos < length) {
+                char c = code.charAt(pos);
+                if (c == '\\' && syntax.backslashEscapes && pos + 1 < length) {
+                    pos += 2;
+                } else if (c == quote) {
+                    pos++;
+                    return;
+                } else if (c == '\n') {
+                    return;
+                } else {
+                    pos++;
+                }
+            }
+        }
+
+        private boolean isIdentifierStart(char c) {
+            return Character.isLetter(c) || c == '_' || c == '$' || (syntax == Syntax.LISP && "*+!-<>=?/".indexOf(c) >= 0);
+        }
+
+        private boolean isIdentifierPart(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$' || (syntax == Syntax.LISP && "*+!-<>=?/".indexOf(c) >= 0);
+        }
+    }
+
+    /**
+     * Tokeniser for HTML and XML.
+     */
+    private static final class MarkupLexer {
+
+        private final CharSequence code;
+        private final StringBuilder out;
+        private final int length;
+        private int pos = 0;
+
+        private MarkupLexer(CharSequence code, StringBuilder out) {
+            this.code = code;
+            this.out = out;
+            this.length = code.length();
+        }
+
+        private void run() {
+            while (pos < length) {
+                int start = pos;
+                if (startsWith(code, pos, "<!--")) {
+                    int end = indexOf(code, "-->", pos + 4);
+                    pos = end < 0 ? length : end + 3;
+                    emit(code, start, pos, COM, out);
+                } else if (startsWith(code, pos, "<![CDATA[")) {
+                    int end = indexOf(code, "]]>", pos + 9);
+                    pos = end < 0 ? length : end + 3;
+                    emit(code, start, pos, STR, out);
+                } else if (startsWith(code, pos, "<!") || startsWith(code, pos, "<?")) {
+                    int end = indexOf(code, ">", pos + 2);
+                    pos = end < 0 ? length : end + 1;
+                    emit(code, start, pos, DEC, out);
+                } else if (code.charAt(pos) == '<' && pos + 1 < length
+                        && (Character.isLetter(code.charAt(pos + 1)) || code.charAt(pos + 1) == '/')) {
+                    readTag();
+                } else {
+                    while (pos < length && code.charAt(pos) != '<') {
+                        pos++;
+                    }
+                    if (pos == start) {
+                        pos++;
+                    }
+                    emit(code, start, pos, null, out);
+                }
+            }
+        }
+
+        private void readTag() {
+            int start = pos;
+            pos++;
+            while (pos < length && !Character.isWhitespace(code.charAt(pos)) && code.charAt(pos) != '>'
+                    && !startsWith(code, pos, "/>")) {
+                pos++;
+            }
+            emit(code, start, pos, TAG, out);
+            while (pos < length) {
+                char c = code.charAt(pos);
+                start = pos;
+                if (c == '>') {
+                    pos++;
+                    emit(code, start, pos, TAG, out);
+                    return;
+                } else if (startsWith(code, pos, "/>")) {
+                    pos += 2;
+                    emit(code, start, pos, TAG, out);
+                    return;
+                } else if (c == '"' || c == '\'') {
+                    int end = indexOf(code, String.valueOf(c), pos + 1);
+                    pos = end < 0 ? length : end + 1;
+                    emit(code, start, pos, ATV, out);
+                } else if (c == '=') {
+                    pos++;
+                    emit(code, start, pos, PUN, out);
+                } else if (Character.isWhitespace(c)) {
+                    while (pos < length && Character.isWhitespace(code.charAt(pos))) {
+                        pos++;
+                    }
+                    emit(code, start, pos, null, out);
+                } else {
+                    while (pos < length && !Character.isWhitespace(code.charAt(pos))
+                            && "=>\"'".indexOf(code.charAt(pos)) < 0 && !startsWith(code, pos, "/>")) {
+                        pos++;
+                    }
+                    emit(code, start, pos, ATN, out);
+                }
+            }
+        }
+    }
+}
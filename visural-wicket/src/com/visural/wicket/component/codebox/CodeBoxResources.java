@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2009 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.codebox;
+
+import com.google.prettify.ExtraJSResourceReference;
+import com.google.prettify.PrettifyJSResourceReference;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.wicket.Application;
+import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
+import org.apache.wicket.request.resource.JavaScriptResourceReference;
+
+/**
+ * Application level resource configuration for {@link CodeBox}.
+ *
+ * By default each `CodeBox` contributes prettify.js, plus a separate script for
+ * languages which need a prettify extension. Call `installBundle(...)` from
+ * `Application.init()` to serve prettify, every language extension and the
+ * incremental highlighting script as one bundled resource instead. Any page
+ * which uses one or more `CodeBox`es then makes a single, cacheable request for
+ * all of its highlighting JavaScript, however many languages it uses.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public class CodeBoxResources {
+
+    public static final String BUNDLE_NAME = "codebox-bundle.js";
+
+    /**
+     * Registers the CodeBox JavaScript bundle with the application.
+     *
+     * @param application
+     * @return the header item for the bundle
+     */
+    public static JavaScriptReferenceHeaderItem installBundle(Application application) {
+        List<JavaScriptResourceReference> refs = new ArrayList<JavaScriptResourceReference>();
+        refs.add(new JavaScriptResourceReference(PrettifyJSResourceReference.class, "prettify.js"));
+        Set<String> extraFiles = new LinkedHashSet<String>();
+        for (CodeBoxLanguage language : CodeBoxLanguage.values()) {
+            if (language.getExtraJSfile() != null && extraFiles.add(language.getExtraJSfile())) {
+                refs.add(new JavaScriptResourceReference(ExtraJSResourceReference.class, language.getExtraJSfile()));
+            }
+        }
+        refs.add(new JavaScriptResourceReference(CodeBoxIncrementalJSRef.class, "codebox-incremental.js"));
+        return application.getResourceBundles().addJavaScriptBundle(CodeBoxResources.class, BUNDLE_NAME,
+                refs.toArray(new JavaScriptResourceReference[refs.size()]));
+    }
+}
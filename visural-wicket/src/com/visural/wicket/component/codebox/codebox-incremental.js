@@ -0,0 +1,92 @@
+/*
+ *  Copyright 2009 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+/*
+ * Incremental highlighting for CodeBox. Code is rendered in chunks of lines
+ * (<span class="cbchunk">) and each chunk is passed through prettyPrintOne()
+ * only when it comes within a screen's height of the viewport.
+ */
+var VisuralCodeBox = VisuralCodeBox || {
+    boxes: [],
+    timer: null,
+    listening: false,
+
+    init: function(id, lang) {
+        var el = document.getElementById(id);
+        if (!el) {
+            return;
+        }
+        var spans = el.getElementsByTagName('span');
+        var chunks = [];
+        for (var n = 0; n < spans.length; n++) {
+            if (spans[n].className === 'cbchunk') {
+                chunks.push(spans[n]);
+            }
+        }
+        for (n = VisuralCodeBox.boxes.length - 1; n >= 0; n--) {
+            if (VisuralCodeBox.boxes[n].id === id) {
+                VisuralCodeBox.boxes.splice(n, 1);
+            }
+        }
+        VisuralCodeBox.boxes.push({ id: id, lang: lang, chunks: chunks });
+        if (!VisuralCodeBox.listening) {
+            VisuralCodeBox.listening = true;
+            VisuralCodeBox.listen(window, 'scroll');
+            VisuralCodeBox.listen(window, 'resize');
+        }
+        VisuralCodeBox.listen(el, 'scroll');
+        VisuralCodeBox.update();
+    },
+
+    listen: function(target, event) {
+        if (target.addEventListener) {
+            target.addEventListener(event, VisuralCodeBox.schedule, false);
+        } else if (target.attachEvent) {
+            target.attachEvent('on' + event, VisuralCodeBox.schedule);
+        }
+    },
+
+    schedule: function() {
+        if (VisuralCodeBox.timer === null) {
+            VisuralCodeBox.timer = setTimeout(function() {
+                VisuralCodeBox.timer = null;
+                VisuralCodeBox.update();
+            }, 100);
+        }
+    },
+
+    update: function() {
+        var viewHeight = window.innerHeight || document.documentElement.clientHeight;
+        for (var b = 0; b < VisuralCodeBox.boxes.length; b++) {
+            var box = VisuralCodeBox.boxes[b];
+            for (var n = 0; n < box.chunks.length; n++) {
+                var chunk = box.chunks[n];
+                if (chunk === null) {
+                    continue;
+                }
+                var rect = chunk.getBoundingClientRect();
+                if (rect.top > viewHeight * 2) {
+                    break;
+                }
+                if (rect.bottom >= -viewHeight) {
+                    chunk.innerHTML = prettyPrintOne(chunk.innerHTML, box.lang);
+                    box.chunks[n] = null;
+                }
+            }
+        }
+    }
+};
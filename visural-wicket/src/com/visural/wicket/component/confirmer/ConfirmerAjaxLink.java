@@ -27,6 +27,7 @@ import com.visural.wicket.security.ISecureRenderInstance;
 import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.markup.head.IHeaderResponse;
 
 /**
  * @version $Id: ConfirmerAjaxLink.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
@@ -42,6 +43,18 @@ public abstract class ConfirmerAjaxLink extends AjaxLink implements ConfirmerCom
         common = new ConfirmerCommon(this);
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        common.onConfigure();
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        common.renderTemplate(response);
+    }
+
     /**
      * Override and return false to suppress static JavaScript and CSS contributions.
      * (May be desired if you are concatenating / compressing resources as part of build process)
@@ -26,6 +26,7 @@ import com.visural.wicket.security.ISecureRenderInstance;
 import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
 import org.apache.wicket.ajax.markup.html.form.AjaxSubmitLink;
+import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.html.form.Form;
 
 /**
@@ -47,6 +48,18 @@ public abstract class ConfirmerAjaxSubmitLink extends AjaxSubmitLink implements
         common = new ConfirmerCommon(this);
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        common.onConfigure();
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        common.renderTemplate(response);
+    }
+
     /**
      * Override and return false to suppress static JavaScript and CSS contributions.
      * (May be desired if you are concatenating / compressing resources as part of build process)
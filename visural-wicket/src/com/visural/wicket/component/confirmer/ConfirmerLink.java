@@ -24,6 +24,7 @@ import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
 import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.html.link.Link;
 
 /**
@@ -40,6 +41,18 @@ public abstract class ConfirmerLink extends Link implements ConfirmerComponent,
         common = new ConfirmerCommon(this);
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        common.onConfigure();
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        common.renderTemplate(response);
+    }
+
     /**
      * Override and return false to suppress static JavaScript and CSS contributions.
      * (May be desired if you are concatenating / compressing resources as part of build process)
@@ -23,6 +23,7 @@ import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
 import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.html.form.Form;
 import org.apache.wicket.markup.html.form.SubmitLink;
 
@@ -45,6 +46,18 @@ public class ConfirmerSubmitLink extends SubmitLink implements ConfirmerComponen
         common = new ConfirmerCommon(this);
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        common.onConfigure();
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        common.renderTemplate(response);
+    }
+
     /**
      * Override and return false to suppress static JavaScript and CSS contributions.
      * (May be desired if you are concatenating / compressing resources as part of build process)
@@ -20,19 +20,21 @@ import java.io.Serializable;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
-import org.apache.wicket.behavior.Behavior;
-import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
-import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
 import org.apache.wicket.markup.html.link.AbstractLink;
-import org.apache.wicket.request.mapper.parameter.PageParameters;
 
-import com.jquery.JQueryBGIFrameResourceReference;
-import com.visural.javascript.JQueryCenterResourceReference;
-import com.visural.wicket.component.submitters.impl.ModalCSSRef;
 import com.visural.wicket.component.submitters.impl.ModalHeaderContributor;
+import com.visural.wicket.util.ContentDigest;
+import com.visural.wicket.util.JavaScriptStrings;
+import com.visural.wicket.util.ResourceUrlCache;
 
 /**
+ * The confirmation prompt markup is registered once per page as a client side
+ * template, keyed by its content, so links with the same icon, message and
+ * labels share a single copy and each link's onclick only refers to the
+ * template and supplies the action to run on confirmation.
+ *
  * @version $Id: ConfirmerCommon.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
@@ -52,32 +54,50 @@ public class ConfirmerCommon implements Serializable {
 
     private String onClickJS = "";
     private Integer modalWidth = null;
+    // the prompt template for the current render, see onConfigure()
+    private transient String templateHTML = null;
+    private transient String templateKey = null;
    
     public ConfirmerCommon(ConfirmerComponent com) {
         this.imComponent = com;
         this.component = (Component) imComponent;
-        if (com.autoAddToHeader()) {
-            ((Component) com).add(new ModalHeaderContributor());
-            component.add(new Behavior() {
-                @Override
-                public void renderHead(Component component, IHeaderResponse response) {
-                	response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryCenterResourceReference()));
-                }
-            });
-            component.add(new Behavior() {
-                @Override
-                public void renderHead(Component component, IHeaderResponse response) {
-                	response.render(CssHeaderItem.forReference(new ModalCSSRef()));
-                }
-            });
-            if (com.isSupportIE6()) {
-                component.add(new Behavior() {
-                    @Override
-                    public void renderHead(Component component, IHeaderResponse response) {
-                    	response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryBGIFrameResourceReference()));
-                    }
-                });
-            }
+        component.add(ModalHeaderContributor.get());
+    }
+
+    /**
+     * Discards the prompt template built for the previous render. Called from
+     * the component's `onConfigure()`, so the template is built and keyed only
+     * once per render.
+     */
+    public void onConfigure() {
+        templateHTML = null;
+        templateKey = null;
+    }
+
+    private String getTemplateHTML() {
+        if (templateHTML == null) {
+            templateHTML = getContentHTML();
+            templateKey = "c" + ContentDigest.sha1(templateHTML);
+        }
+        return templateHTML;
+    }
+
+    private String getTemplateKey() {
+        getTemplateHTML();
+        return templateKey;
+    }
+
+    /**
+     * Registers the client side template for this confirmer's prompt, once per
+     * distinct template on the page.
+     * @param response
+     */
+    public void renderTemplate(IHeaderResponse response) {
+        if (comEnabled()) {
+            String html = getTemplateHTML();
+            String key = getTemplateKey();
+            response.render(JavaScriptHeaderItem.forScript("(window.VISURALConfirmTemplates = window.VISURALConfirmTemplates || {})['"
+                    + key + "'] = '" + JavaScriptStrings.escape(html) + "';", "VISURALConfirm" + key));
         }
     }
 
@@ -96,25 +116,27 @@ public class ConfirmerCommon implements Serializable {
             return "";
         }
         StringBuilder result = new StringBuilder();
-        result.append("jQuery('#visuraloverlay_high').show();");
-        if (imComponent.isSupportIE6()) {
-            result.append("jQuery('#visuraloverlay_high').bgiframe();");
-        }
-        result.append("jQuery('#visuraloverlay_high').height(jQuery(document).height()); jQuery('#visuraloverlaycontent_high').html('")
-                .append(getContentHTML().replace("'", "\\'"))
-                .append("'); jQuery('#visuraloverlaycontent_high').center(); jQuery('#visuraloverlaycontent_high').show();");
+        result.append("VisuralOverlay.confirm('")
+              .append(getTemplateKey())
+              .append("', function() {").append(onClickJS).append("}, ")
+              .append(imComponent.isSupportIE6()).append(");");
         return result.toString().replace("\"", "\\x22");
     }
 
+    /**
+     * Returns the HTML of the confirmation prompt template. The OK link runs the
+     * action of whichever link opened the prompt.
+     * @return
+     */
     public String getContentHTML() {
         StringBuilder html = new StringBuilder("<div "+(modalWidth != null ? "style='width: "+modalWidth+"px;' " : "")+"class=\"modalborder\"><table width=\"100%\"><tr><td width=\"40px\">");
         if (imComponent.getIcon() != null) {
-            html.append("<img src=\"").append(component.urlFor(new ConfirmerIconRef(icon), new PageParameters())).append("\" style=\"float: left;\"/>");
+            html.append("<img src=\"").append(ResourceUrlCache.urlFor(new ConfirmerIconRef(icon))).append("\" style=\"float: left;\"/>");
         }
         html.append("</td><td>").append(imComponent.getMessageContentHTML()).append("</td></tr></table>");
         html.append("<p style=\"text-align: center;\">");
         if (imComponent.isDisplayOK()) {
-            html.append(imComponent.getLinkHTML(imComponent.getOkButtonLabel(), getModalCloseScript()+onClickJS));
+            html.append(imComponent.getLinkHTML(imComponent.getOkButtonLabel(), "VisuralOverlay.confirmed();"));
         }
         if (imComponent.isDisplayOK() && imComponent.isDisplayCancel()) {
             html.append("&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;");
@@ -127,10 +149,7 @@ public class ConfirmerCommon implements Serializable {
     }
 
     public String getModalCloseScript() {
-        StringBuilder result = new StringBuilder();
-        result.append("jQuery('#visuraloverlay_high').hide();");
-        result.append("jQuery('#visuraloverlaycontent_high').hide();");
-        return result.toString();
+        return "VisuralOverlay.unmodal();";
     }
 
     public IAjaxCallListener getAjaxCallDecorator() {
@@ -184,6 +203,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setCancelButtonLabel(String cancelButtonLabel) {
         this.cancelButtonLabel = cancelButtonLabel;
+        onConfigure();
     }
 
     public boolean isDisplayCancel() {
@@ -192,6 +212,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setDisplayCancel(boolean displayCancel) {
         this.displayCancel = displayCancel;
+        onConfigure();
     }
 
     public boolean isDisplayOK() {
@@ -200,6 +221,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setDisplayOK(boolean displayOK) {
         this.displayOK = displayOK;
+        onConfigure();
     }
 
     public ConfirmerIcon getIcon() {
@@ -208,6 +230,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setIcon(ConfirmerIcon icon) {
         this.icon = icon;
+        onConfigure();
     }
 
     public String getOkButtonLabel() {
@@ -216,6 +239,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setOkButtonLabel(String okButtonLabel) {
         this.okButtonLabel = okButtonLabel;
+        onConfigure();
     }
 
     public String getMessageContentHTML() {
@@ -224,6 +248,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setMessageContentHTML(String messageContentHTML) {
         this.messageContentHTML = messageContentHTML;
+        onConfigure();
     }
 
     public String getOnClickJS() {
@@ -240,6 +265,7 @@ public class ConfirmerCommon implements Serializable {
 
     public void setModalWidth(Integer modalWidth) {
         this.modalWidth = modalWidth;
+        onConfigure();
     }
 
 }
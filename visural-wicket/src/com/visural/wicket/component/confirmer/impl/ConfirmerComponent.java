@@ -17,15 +17,13 @@
 
 package com.visural.wicket.component.confirmer.impl;
 
+import com.visural.wicket.component.submitters.impl.ModalComponent;
+
 /**
  *
  * @author Richard Nichols
  */
-public interface ConfirmerComponent {
-
-    boolean autoAddToHeader();
-    
-    boolean isSupportIE6();
+public interface ConfirmerComponent extends ModalComponent {
 
     String getMessageContentHTML();
     
@@ -19,17 +19,19 @@ package com.visural.wicket.component.dialog;
 import com.jquery.JQueryBGIFrameResourceReference;
 import com.visural.javascript.JQueryCenterResourceReference;
 import com.visural.wicket.component.submitters.impl.ModalCSSRef;
+import com.visural.wicket.component.submitters.impl.ModalJSRef;
 import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
+import java.io.Serializable;
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxEventBehavior;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
-import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 
 /**
@@ -40,45 +42,50 @@ import org.apache.wicket.markup.html.WebMarkupContainer;
  *
  * It can optionally be closed by clicking outside the dialog.
  *
+ * All dialogs on a page share a single overlay element, managed by the
+ * `VisuralOverlay` script (see {@link ModalJSRef}).
+ *
+ * In lazy mode (`setLazy(true)`), the dialog's body is not rendered with the
+ * page, but only the first time it is opened with `open(AjaxRequestTarget)`
+ * (the click to open behaviour will use Ajax for a lazy dialog). With
+ * `setReleaseOnClose(true)` the body is dropped again when the dialog is closed
+ * with `close(AjaxRequestTarget)`, and re-rendered on the next open.
+ *
+ * Lazy mode on its own only defers rendering - children added to the dialog
+ * are still constructed up front, and serialized with the page. To also defer
+ * their construction, set a {@link BodyFactory} with `setBodyFactory(...)` and
+ * mark up the body as a single `<div wicket:id="body"></div>` within the
+ * dialog. The body component is then only created when the dialog is first
+ * opened, and with `setReleaseOnClose(true)` it is discarded again on close.
+ *
  * @author Richard Nichols
  */
 public class Dialog extends WebMarkupContainer implements ISecureEnableInstance, ISecureRenderInstance {
     private static final long serialVersionUID = 1L;
     
     private boolean clickBkgToClose = false;
+    private boolean lazy = false;
+    private boolean releaseOnClose = false;
+    private boolean loaded = false;
+    private BodyFactory bodyFactory = null;
+    private transient String openScript;
+    private transient String closeScript;
+
+    /**
+     * The id of the body component created by a {@link BodyFactory}.
+     */
+    public static final String BODY_ID = "body";
+
+    /**
+     * Creates the body of a lazy dialog on demand, see `setBodyFactory(...)`.
+     */
+    public interface BodyFactory extends Serializable {
+        Component newBody(String id);
+    }
 
     public Dialog(String id) {
         super(id);
         setOutputMarkupId(true);
-        add(new Behavior() {
-
-            @Override
-            public void renderHead(Component component, IHeaderResponse response) {
-                response.render(OnDomReadyHeaderItem.forScript(getJS()));
-            }
-
-            private String getJS() {
-                StringBuilder sb = new StringBuilder();
-                sb.append("if (jQuery('#")
-                  .append(getDivId())
-                  .append("').length == 0) { jQuery(document.body).append('")
-                  .append(getDiv().replace("'", "\\'"))
-                  .append("'); }");
-                return sb.toString();
-            }
-
-            private String getDivId() {
-                return getMarkupId() + "_ovl";
-            }
-
-            private String getDiv() {
-                if (isClickBkgToClose()) {
-                    return ("<div id=\"" + getDivId() + "\" class=\"visuraloverlay\" onclick=\""+getCloseString()+"\"></div>");
-                } else {
-                    return ("<div id=\"" + getDivId() + "\" class=\"visuraloverlay\"></div>");
-                }
-            }
-        });
     }
 
     @Override
@@ -86,6 +93,7 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
         super.renderHead(response);
         if (autoAddToHeader()) {
         	response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryCenterResourceReference()));
+            response.render(JavaScriptReferenceHeaderItem.forReference(new ModalJSRef()));
             response.render(CssHeaderItem.forReference(new ModalCSSRef()));
             if (isSupportIE6()) {
             	response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryBGIFrameResourceReference()));
@@ -104,6 +112,26 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
         return true;
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        if (isLazy()) {
+            boolean render = isBodyRendered();
+            for (Component c : this) {
+                c.setVisibilityAllowed(render);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the dialog body should be rendered, i.e. the dialog is
+     * not lazy, or it has been opened.
+     * @return
+     */
+    protected boolean isBodyRendered() {
+        return !isLazy() || loaded;
+    }
+
     @Override
     protected void onComponentTag(ComponentTag tag) {
         super.onComponentTag(tag);
@@ -115,6 +143,13 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
      * @param target
      */
     public void open(AjaxRequestTarget target) {
+        if (!isBodyRendered()) {
+            loaded = true;
+            if (bodyFactory != null) {
+                addOrReplace(bodyFactory.newBody(BODY_ID));
+            }
+            target.add(this);
+        }
         target.appendJavaScript(getOpenString());
     }
 
@@ -124,6 +159,13 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
      */
     public void close(AjaxRequestTarget target) {
         target.appendJavaScript(getCloseString());
+        if (isLazy() && isReleaseOnClose() && loaded) {
+            loaded = false;
+            if (bodyFactory != null) {
+                addOrReplace(newBodyPlaceholder());
+            }
+            target.add(this);
+        }
     }
 
     /**
@@ -132,6 +174,16 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
      * @return
      */
     public Behavior getClickToOpenBehaviour() {
+        if (isLazy()) {
+            return new AjaxEventBehavior("click") {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void onEvent(AjaxRequestTarget target) {
+                    open(target);
+                }
+            };
+        }
         return new Behavior() {
 
             @Override
@@ -165,20 +217,10 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
         if (!isEnabled()) {
             return "";
         }
-        StringBuilder result = new StringBuilder();
-        result.append("jQuery('#").append(getMarkupId()).append("_ovl').show();");
-        if (isSupportIE6()) {
-            result.append("jQuery('#").append(getMarkupId()).append("_ovl').bgiframe();");
+        if (openScript == null) {
+            openScript = "VisuralOverlay.open('" + getMarkupId() + "', " + isClickBkgToClose() + ", " + isSupportIE6() + ");";
         }
-        result.append("jQuery('#")
-              .append(getMarkupId())
-              .append("_ovl').height(jQuery(document).height()); jQuery('#")
-              .append(getMarkupId())
-              .append("').center(); jQuery('#")
-              .append(getMarkupId())
-              .append("').show();");
-
-        return result.toString();
+        return openScript;
     }
 
     /**
@@ -187,10 +229,10 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
      * @return
      */
     protected String getCloseString() {
-        StringBuilder result = new StringBuilder();
-        result.append("jQuery('#").append(getMarkupId()).append("').hide();");
-        result.append("jQuery('#").append(getMarkupId()).append("_ovl').hide();");
-        return result.toString();
+        if (closeScript == null) {
+            closeScript = "VisuralOverlay.close('" + getMarkupId() + "');";
+        }
+        return closeScript;
     }
 
     /**
@@ -215,6 +257,60 @@ public class Dialog extends WebMarkupContainer implements ISecureEnableInstance,
      */
     public void setClickBkgToClose(boolean clickBkgToClose) {
         this.clickBkgToClose = clickBkgToClose;
+        openScript = null;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Set whether the dialog body is only rendered once the dialog is opened
+     * via Ajax (default: false). Set before calling `getClickToOpenBehaviour()`.
+     * @param lazy
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public BodyFactory getBodyFactory() {
+        return bodyFactory;
+    }
+
+    /**
+     * Sets the factory which creates the dialog body (with the id `BODY_ID`)
+     * the first time the dialog is opened, which also makes the dialog lazy.
+     * Until then, only an empty placeholder is kept in the component tree.
+     * @param bodyFactory
+     */
+    public void setBodyFactory(BodyFactory bodyFactory) {
+        this.bodyFactory = bodyFactory;
+        if (bodyFactory != null) {
+            setLazy(true);
+            if (!loaded) {
+                addOrReplace(newBodyPlaceholder());
+            } else {
+                addOrReplace(bodyFactory.newBody(BODY_ID));
+            }
+        }
+    }
+
+    private static Component newBodyPlaceholder() {
+        return new WebMarkupContainer(BODY_ID);
+    }
+
+    public boolean isReleaseOnClose() {
+        return releaseOnClose;
+    }
+
+    /**
+     * In lazy mode, set whether the dialog body should be dropped from the
+     * client (and, with a body factory, from the component tree) when the
+     * dialog is closed via Ajax (default: false).
+     * @param releaseOnClose
+     */
+    public void setReleaseOnClose(boolean releaseOnClose) {
+        this.releaseOnClose = releaseOnClose;
     }
 
     public IPrivilege getRenderPrivilege() {
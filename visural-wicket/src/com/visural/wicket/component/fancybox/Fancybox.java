@@ -16,9 +16,11 @@
  */
 package com.visural.wicket.component.fancybox;
 
+import com.visural.wicket.util.ContentDigest;
 import com.visural.wicket.util.images.ImageReference;
 import com.visural.common.Function;
 import com.visural.common.StringUtil;
+import com.visural.common.datastruct.LRUCache;
 import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
@@ -27,6 +29,10 @@ import java.util.Map;
 import net.fancybox.FancyBoxCSSRef;
 import net.fancybox.FancyBoxJavascriptRef;
 import net.fancybox.JQueryMouseWheelJSRef;
+import org.apache.wicket.Component;
+import org.apache.wicket.Page;
+import org.apache.wicket.behavior.AbstractAjaxBehavior;
+import org.apache.wicket.behavior.Behavior;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
@@ -35,6 +41,11 @@ import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.handler.TextRequestHandler;
+import org.apache.wicket.request.http.handler.RedirectRequestHandler;
+import org.apache.wicket.response.StringResponse;
 
 /**
  * A wicket-integration of the Fancybox component from http://fancybox.net/
@@ -58,6 +69,19 @@ import org.apache.wicket.model.IModel;
  *   `<div style="display: none;"><div wicket:id="myContentToShow">....</div></div>`
  * This is less optimal but has changed due to Fancybox changes in the latest version.
  *
+ * Container and iframe boxes may be made lazy with `setLazy(true)`. A lazy
+ * container is not rendered with the page at all - its markup is rendered on
+ * the server when the box is first opened and fetched by Ajax, and is then kept
+ * until the page is next rendered or `invalidateLazyContent()` is called. A lazy
+ * iframe box only evaluates its URL model when the box is opened. Note that
+ * header contributions (e.g. JavaScript) of components within lazily rendered
+ * content are not included.
+ *
+ * Pages with many boxes (e.g. large galleries) should use `setSharedInit(true)`.
+ * Each box is then marked with a class identifying its option set, and a single
+ * delegated click handler is registered per distinct option set, rather than
+ * initialising every box (or group) by markup id.
+ *
  * @version $Id: Fancybox.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
@@ -73,6 +97,13 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
     private final IModel iframeURL;
     private final WebMarkupContainer container;
     private String boxTitle;
+    private boolean lazy = false;
+    private boolean sharedInit = false;
+    private transient BoxOptions boxOptions;
+    private LazyContentBehavior lazyBehavior;
+    private LazyVisibilityBehavior lazyVisibility;
+    private transient String lazyContent;
+    private transient boolean renderingLazyContent = false;
 
     public Fancybox(String id, ImageReference image) {
         super(id);
@@ -149,8 +180,14 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
         if (group != null) {
             tag.put("rel", group.getName());
         }
+        Fancybox optionSource = getOptionSource();
+        if (optionSource.isSharedInit()) {
+            tag.append("class", optionSource.getSharedInitClass(), " ");
+        }
         if (isImage()) {
             tag.put("href", image.getURL());
+        } else if (isLazy()) {
+            tag.put("href", lazyBehavior.getCallbackUrl());
         } else if (isIframe()) {
             tag.put("href", Function.nvl(this.iframeURL.getObject(), "").toString());
         } else if (isDiv()) {
@@ -181,6 +218,13 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
         }
     }
 
+    @Override
+    protected void onBeforeRender() {
+        super.onBeforeRender();
+        // a full render of the box means the page is being rendered afresh
+        invalidateLazyContent();
+    }
+
     @Override
     public void renderHead(IHeaderResponse response) {
         super.renderHead(response);
@@ -198,7 +242,19 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
     }
 
     private String getFancyBoxJS() {
-        if (group != null && group.getMain() != this) {
+        Fancybox optionSource = getOptionSource();
+        if (optionSource.isSharedInit()) {
+            // identical for every box with the same options, so only rendered once
+            String cls = optionSource.getSharedInitClass();
+            return "if (!window.VISURAL" + cls + ") {\n"
+                    + "  window.VISURAL" + cls + " = true;\n"
+                    + "  jQuery(document).delegate('a." + cls + "', 'click.fbinit', function() {\n"
+                    + "    jQuery(this).fancybox({" + optionSource.getBoxOptionsAsString() + "}).trigger('click.fb');\n"
+                    + "    return false;\n"
+                    + "  });\n"
+                    + "}";
+        }
+        if (optionSource != this) {
             return null;
         }
         String selector = (group != null ? group.getGroupSelector() : "#" + getMarkupId());
@@ -247,9 +303,49 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
         return false;
     }
 
+    /**
+     * Boxes in a group take their options from the group's main box.
+     */
+    private Fancybox getOptionSource() {
+        return group != null && group.getMain() != null ? group.getMain() : this;
+    }
+
+    private String getSharedInitClass() {
+        return getCachedBoxOptions().sharedInitClass;
+    }
+
     private String getBoxOptionsAsString() {
+        return getCachedBoxOptions().literal;
+    }
+
+    /**
+     * Returns the option literal for this box, which is only rebuilt after an
+     * option has changed. Identical option sets share a single instance.
+     */
+    private BoxOptions getCachedBoxOptions() {
+        if (boxOptions == null) {
+            String literal = buildBoxOptionsString();
+            synchronized (SHARED_OPTIONS) {
+                boxOptions = SHARED_OPTIONS.get(literal);
+                if (boxOptions == null) {
+                    boxOptions = new BoxOptions(literal);
+                    SHARED_OPTIONS.put(literal, boxOptions);
+                }
+            }
+        }
+        return boxOptions;
+    }
+
+    private void invalidateBoxOptions() {
+        boxOptions = null;
+    }
+
+    private String buildBoxOptionsString() {
         StringBuilder result = new StringBuilder();
         Map<String, String> options = getBoxOptions();
+        if (isLazy() && isDiv()) {
+            options.put("type", "'ajax'");
+        }
         if (isIframe()) {
             // force iframe, otherwise have to use element class, which creates styling issues
             options.put("type", "'iframe'");
@@ -428,6 +524,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setPadding(Integer padding) {
         this.padding = padding;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -442,6 +539,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setMargin(Integer margin) {
         this.margin = margin;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -456,6 +554,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOpacity(Boolean opacity) {
         this.opacity = opacity;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -472,6 +571,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setModal(Boolean modal) {
         this.modal = modal;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -486,6 +586,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setCyclic(Boolean cyclic) {
         this.cyclic = cyclic;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -500,6 +601,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setScrolling(Boolean scrolling) {
         this.scrolling = scrolling;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -514,6 +616,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setWidth(Integer width) {
         this.width = width;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -528,6 +631,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setHeight(Integer height) {
         this.height = height;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -542,6 +646,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setAutoScale(Boolean autoScale) {
         this.autoScale = autoScale;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -557,6 +662,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setAutoDimensions(Boolean autoDimensions) {
         this.autoDimensions = autoDimensions;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -571,6 +677,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setCenterOnScroll(Boolean centerOnScroll) {
         this.centerOnScroll = centerOnScroll;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -585,6 +692,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setHideOnOverlayClick(Boolean hideOnOverlayClick) {
         this.hideOnOverlayClick = hideOnOverlayClick;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -599,6 +707,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setHideOnContentClick(Boolean hideOnContentClick) {
         this.hideOnContentClick = hideOnContentClick;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -613,6 +722,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOverlayShow(Boolean overlayShow) {
         this.overlayShow = overlayShow;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -627,6 +737,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOverlayOpacity(Float overlayOpacity) {
         this.overlayOpacity = overlayOpacity;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -641,6 +752,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOverlayColor(String overlayColor) {
         this.overlayColor = overlayColor;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -655,6 +767,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setTitleShow(Boolean titleShow) {
         this.titleShow = titleShow;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -669,6 +782,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setTitlePosition(TitlePosition titlePosition) {
         this.titlePosition = titlePosition;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -683,6 +797,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setTransitionIn(FancyboxTransition transitionIn) {
         this.transitionIn = transitionIn.name();
+        invalidateBoxOptions();
         return this;
     }
 
@@ -697,6 +812,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setTransitionOut(FancyboxTransition transitionOut) {
         this.transitionOut = transitionOut.name();
+        invalidateBoxOptions();
         return this;
     }
 
@@ -711,6 +827,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setSpeedIn(Integer speedIn) {
         this.speedIn = speedIn;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -724,6 +841,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setSpeedOut(Integer speedOut) {
         this.speedOut = speedOut;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -737,6 +855,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setChangeSpeed(Integer changeSpeed) {
         this.changeSpeed = changeSpeed;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -751,6 +870,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setChangeFade(String changeFade) {
         this.changeFade = changeFade;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -765,6 +885,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setEasingIn(String easingIn) {
         this.easingIn = easingIn;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -779,6 +900,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setEasingOut(String easingOut) {
         this.easingOut = easingOut;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -793,6 +915,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setShowCloseButton(Boolean showCloseButton) {
         this.showCloseButton = showCloseButton;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -807,6 +930,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setShowNavArrows(Boolean showNavArrows) {
         this.showNavArrows = showNavArrows;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -821,6 +945,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setEnableEscapeButton(Boolean enableEscapeButton) {
         this.enableEscapeButton = enableEscapeButton;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -835,6 +960,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOnStart(String onStart) {
         this.onStart = onStart;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -849,6 +975,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOnCancel(String onCancel) {
         this.onCancel = onCancel;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -863,6 +990,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOnComplete(String onComplete) {
         this.onComplete = onComplete;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -877,6 +1005,7 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOnCleanup(String onCleanup) {
         this.onCleanup = onCleanup;
+        invalidateBoxOptions();
         return this;
     }
 
@@ -891,9 +1020,137 @@ public class Fancybox extends WebMarkupContainer implements ISecureEnableInstanc
      */
     public Fancybox setOnClosed(String onClosed) {
         this.onClosed = onClosed;
+        invalidateBoxOptions();
         return this;
     }
 
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Set whether the content of a container or iframe box is only rendered
+     * when the box is opened, rather than with the page.
+     * @param lazy
+     * @return
+     */
+    public Fancybox setLazy(boolean lazy) {
+        if (lazy && isImage()) {
+            throw new IllegalStateException("Image fancyboxes can not be lazy - image content is always loaded on demand.");
+        }
+        if (lazy && lazyBehavior == null) {
+            lazyBehavior = new LazyContentBehavior();
+            add(lazyBehavior);
+            if (isDiv()) {
+                lazyVisibility = new LazyVisibilityBehavior();
+                container.add(lazyVisibility);
+            }
+        } else if (!lazy && lazyBehavior != null) {
+            remove(lazyBehavior);
+            lazyBehavior = null;
+            if (lazyVisibility != null) {
+                container.remove(lazyVisibility);
+                lazyVisibility = null;
+            }
+        }
+        this.lazy = lazy;
+        invalidateLazyContent();
+        invalidateBoxOptions();
+        return this;
+    }
+
+    public boolean isSharedInit() {
+        return sharedInit;
+    }
+
+    /**
+     * Set whether this box is initialised by a delegated handler shared by all
+     * boxes with the same options, rather than by its own script. Within a
+     * group, the setting of the group's main box applies.
+     * @param sharedInit
+     * @return
+     */
+    public Fancybox setSharedInit(boolean sharedInit) {
+        this.sharedInit = sharedInit;
+        return this;
+    }
+
+    /**
+     * Discards the server side copy of lazily rendered container content, so
+     * it is rendered again the next time the box is opened.
+     */
+    public void invalidateLazyContent() {
+        lazyContent = null;
+    }
+
+    private String renderLazyContent() {
+        if (lazyContent == null) {
+            RequestCycle rc = getRequestCycle();
+            Page page = container.getPage();
+            Response original = rc.getResponse();
+            StringResponse markup = new StringResponse();
+            rc.setResponse(markup);
+            renderingLazyContent = true;
+            try {
+                page.startComponentRender(container);
+                container.prepareForRender();
+                container.render();
+            } finally {
+                page.endComponentRender(container);
+                renderingLazyContent = false;
+                rc.setResponse(original);
+            }
+            lazyContent = markup.toString();
+        }
+        return lazyContent;
+    }
+
+    /**
+     * Serves the content of a lazy box when it is opened.
+     */
+    private class LazyContentBehavior extends AbstractAjaxBehavior {
+        private static final long serialVersionUID = 1L;
+
+        public void onRequest() {
+            RequestCycle rc = getComponent().getRequestCycle();
+            if (isDiv()) {
+                rc.scheduleRequestHandlerAfterCurrent(new TextRequestHandler("text/html", getComponent().getApplication().getRequestCycleSettings().getResponseRequestEncoding(), renderLazyContent()));
+            } else {
+                rc.scheduleRequestHandlerAfterCurrent(new RedirectRequestHandler(Function.nvl(iframeURL.getObject(), "").toString()));
+            }
+        }
+    }
+
+    /**
+     * Keeps the container of a lazy box out of the page, other than while its
+     * content is being rendered on request.
+     */
+    private class LazyVisibilityBehavior extends Behavior {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void onConfigure(Component component) {
+            super.onConfigure(component);
+            component.setVisibilityAllowed(renderingLazyContent);
+        }
+    }
+
+    private static final Map<String, BoxOptions> SHARED_OPTIONS = new LRUCache<String, BoxOptions>(256);
+
+    /**
+     * A serialised option set, with the class name used to share its
+     * initialiser between boxes.
+     */
+    private static final class BoxOptions {
+        private final String literal;
+        private final String sharedInitClass;
+
+        BoxOptions(String literal) {
+            this.literal = literal;
+            this.sharedInitClass = "fbx" + ContentDigest.sha1(literal);
+        }
+    }
+
     public IPrivilege getRenderPrivilege() {
         return IPrivilege.NULL;
     }
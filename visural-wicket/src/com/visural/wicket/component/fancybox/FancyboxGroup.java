@@ -17,16 +17,21 @@
 package com.visural.wicket.component.fancybox;
 
 import java.io.Serializable;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.security.SecureRandom;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Used to identify a group of {@link Fancybox}s.
  *
  * The group name is arbitrary and just needs to identify the group.
  *
- * Use the supplied factory `get()` method to generate a new group.
+ * Use the supplied factory `get()` method to generate a new group. Generated
+ * names are unique across restarts and cluster nodes.
+ *
+ * The first box added to the group is its main box; if it is removed, the next
+ * box in order of addition takes its place.
  *
  * @version $Id: FancyboxGroup.java 256 2011-02-05 12:06:02Z tibes80@gmail.com $
  * @author Richard Nichols
@@ -35,8 +40,7 @@ public class FancyboxGroup implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private final String name;
-    private Fancybox main = null;
-    private final Set<Fancybox> boxes = new HashSet<Fancybox>();
+    private final Set<Fancybox> boxes = new LinkedHashSet<Fancybox>(4);
 
     public FancyboxGroup(String name) {
         this.name = name;
@@ -47,41 +51,35 @@ public class FancyboxGroup implements Serializable {
     }
 
     protected void addFancybox(Fancybox fb) {
-        if (main == null) {
-            main = fb;
-        }
         boxes.add(fb);
     }
 
     protected void removeFancybox(Fancybox fb) {
-        if (main == fb) {
-            main = (boxes.size() > 0 ? boxes.iterator().next() : null);
-        }
         boxes.remove(fb);
     }
 
     protected String getGroupSelector() {
-        if (boxes.size() == 0) {
-            return "";
-        }
-        Iterator<Fancybox> i = boxes.iterator();
-        StringBuffer selector = new StringBuffer("#"+i.next().getMarkupId());
-        while (i.hasNext()) {
-            selector.append(", #");
-            selector.append(i.next().getMarkupId());
+        StringBuilder selector = new StringBuilder();
+        for (Fancybox fb : boxes) {
+            if (selector.length() > 0) {
+                selector.append(", ");
+            }
+            selector.append('#').append(fb.getMarkupId());
         }
         return selector.toString();
     }
 
     protected Fancybox getMain() {
-        return main;
+        return boxes.isEmpty() ? null : boxes.iterator().next();
     }
 
-    // --- factory for groups - it's really irrevlant what they're actually called
+    // --- factory for groups - it's really irrevlant what they're actually called,
+    // so long as they don't collide, also across nodes and restarts
 
-    private static int groupIdx = 0;
+    private static final String NODE_ID = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+    private static final AtomicLong groupIdx = new AtomicLong();
 
-    public synchronized static FancyboxGroup get() {
-        return new FancyboxGroup("fbgrp_" + groupIdx++);
+    public static FancyboxGroup get() {
+        return new FancyboxGroup("fbgrp_" + NODE_ID + "_" + Long.toString(groupIdx.getAndIncrement(), 36));
     }
 }
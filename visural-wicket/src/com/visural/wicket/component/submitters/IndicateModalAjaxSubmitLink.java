@@ -16,11 +16,14 @@
  */
 package com.visural.wicket.component.submitters;
 
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
-import org.apache.wicket.ajax.markup.html.form.AjaxSubmitLink;
 import org.apache.wicket.markup.html.form.Form;
 
+import com.visural.wicket.component.submitters.impl.BackgroundProgressBehavior;
+import com.visural.wicket.component.submitters.impl.BackgroundTask;
+import com.visural.wicket.component.submitters.impl.GuardedAjaxSubmitLink;
 import com.visural.wicket.component.submitters.impl.IndicateModalAsyncComponent;
 import com.visural.wicket.component.submitters.impl.IndicateModalCommon;
 import com.visural.wicket.security.IPrivilege;
@@ -33,20 +36,36 @@ import com.visural.wicket.security.ISecureRenderInstance;
  * @version $Id: IndicateModalAjaxSubmitLink.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
-public abstract class IndicateModalAjaxSubmitLink extends AjaxSubmitLink implements IndicateModalAsyncComponent, ISecureRenderInstance, ISecureEnableInstance {
+public abstract class IndicateModalAjaxSubmitLink extends GuardedAjaxSubmitLink implements IndicateModalAsyncComponent, ISecureRenderInstance, ISecureEnableInstance {
     private static final long serialVersionUID = 1L;
     
     private final IndicateModalCommon common;
     private int timeoutMillis = 30000;
+    private final BackgroundProgressBehavior background = new BackgroundProgressBehavior() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void onComplete(AjaxRequestTarget target, BackgroundTask task) {
+            onBackgroundComplete(target, task);
+        }
+    };
 
     public IndicateModalAjaxSubmitLink(String id) {
         super(id);
         common = new IndicateModalCommon(this);
+        add(background);
     }
 
     public IndicateModalAjaxSubmitLink(String id, final Form<?> form) {
         super(id, form);
         common = new IndicateModalCommon(this);
+        add(background);
+    }
+
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        common.onConfigure();
     }
 
     /**
@@ -92,6 +111,41 @@ public abstract class IndicateModalAjaxSubmitLink extends AjaxSubmitLink impleme
         return common.getDefaultTimeoutHTML();
     }
 
+    /**
+     * Runs the given task on the application's {@link com.visural.wicket.component.submitters.impl.BackgroundExecutor}
+     * and returns immediately, rather than holding the request (and the page)
+     * until the work is done. The modal indicator stays open, polling for the
+     * task's progress, and `onBackgroundComplete(...)` is called once it is done.
+     *
+     * Call from `onSubmit(target, form)`. The task runs outside of the request
+     * cycle, so it must not access components, models or the session.
+     * @param target
+     * @param task
+     */
+    protected void runInBackground(AjaxRequestTarget target, BackgroundTask task) {
+        background.start(target, task);
+    }
+
+    /**
+     * Override to apply the result of a task started by `runInBackground(...)`.
+     * Called on a request thread once the task is done - check
+     * `task.getFailure()` to see whether it completed normally. A task which
+     * does not complete within `getTimeoutMillis()` is cancelled, and completed
+     * with a `java.util.concurrent.TimeoutException` as its failure.
+     * @param target
+     * @param task
+     */
+    protected void onBackgroundComplete(AjaxRequestTarget target, BackgroundTask task) {
+    }
+
+    public void setPollIntervalMillis(int pollIntervalMillis) {
+        background.setPollIntervalMillis(pollIntervalMillis);
+    }
+
+    public int getPollIntervalMillis() {
+        return background.getPollIntervalMillis();
+    }
+
     @Override
     protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
     	super.updateAjaxAttributes(attributes);
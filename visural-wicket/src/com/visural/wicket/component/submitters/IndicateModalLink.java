@@ -18,6 +18,7 @@ package com.visural.wicket.component.submitters;
 
 import com.visural.wicket.component.submitters.impl.IndicateModalCommon;
 import com.visural.wicket.component.submitters.impl.IndicateModalComponent;
+import com.visural.wicket.component.submitters.impl.SubmitGuard;
 import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
@@ -40,6 +41,12 @@ public abstract class IndicateModalLink extends Link implements IndicateModalCom
         common = new IndicateModalCommon(this);
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        common.onConfigure();
+    }
+
     /**
      * Override and return false to suppress static JavaScript and CSS contributions.
      * (May be desired if you are concatenating / compressing resources as part of build process)
@@ -71,7 +78,7 @@ public abstract class IndicateModalLink extends Link implements IndicateModalCom
     protected void onComponentTag(ComponentTag tag) {
         super.onComponentTag(tag);
         CharSequence parentLink = tag.getAttribute("onclick");
-        tag.put("onclick", common.getModalDisplayScript()+parentLink);
+        tag.put("onclick", SubmitGuard.getClickGuardScript(this)+common.getModalDisplayScript()+parentLink);
     }
 
     /**
@@ -19,18 +19,21 @@ package com.visural.wicket.component.submitters;
 import java.util.Collection;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
-import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
-import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.ResourceReference;
 
+import com.visural.wicket.component.submitters.impl.GuardedAjaxLink;
+import com.visural.wicket.component.submitters.impl.IndicateRefreshCommon;
 import com.visural.wicket.component.submitters.impl.SmallAjaxIndicatorRef;
 import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
+import com.visural.wicket.util.ResourceUrlCache;
 
 /**
  * An AJAX `Link` which replaces the given elements with an indicator image, while the update occurs. *Requires JQuery*
@@ -38,9 +41,8 @@ import com.visural.wicket.security.ISecureRenderInstance;
  * @version $Id: IndicateRefreshAjaxLink.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
-public abstract class IndicateRefreshAjaxLink extends AjaxLink implements ISecureEnableInstance, ISecureRenderInstance {
+public abstract class IndicateRefreshAjaxLink extends GuardedAjaxLink implements ISecureEnableInstance, ISecureRenderInstance {
     private static final long serialVersionUID = 1L;
-    // TODO: modularise this with AjaxSubmitLink
 
     public static final int AJAX_SUBMIT_DELAY_WINDOW = 300;
 
@@ -51,7 +53,8 @@ public abstract class IndicateRefreshAjaxLink extends AjaxLink implements ISecur
     @Override
     public void renderHead(IHeaderResponse response) {
         super.renderHead(response);
-        response.render(OnDomReadyHeaderItem.forScript("jQuery('<img />').attr('src', '" + urlFor(getRefreshIndicatorImageReference(), new PageParameters()) + "');"));
+        response.render(OnDomReadyHeaderItem.forScript("jQuery('<img />').attr('src', '" + ResourceUrlCache.urlFor(getRefreshIndicatorImageReference()) + "');"));
+        IndicateRefreshCommon.renderHead(response, getIndicator(), autoAddToHeader());
     }
     
 
@@ -91,7 +94,7 @@ public abstract class IndicateRefreshAjaxLink extends AjaxLink implements ISecur
      * @return the html to be replaced for the given container component.
      */
     protected String getIndicatorHTML(Component container) {
-        return "<img src=\""+urlFor(getRefreshIndicatorImageReference(), new PageParameters())+"\"/>";
+        return "<img src=\""+ResourceUrlCache.urlFor(getRefreshIndicatorImageReference())+"\"/>";
     }
 
     /**
@@ -103,35 +106,28 @@ public abstract class IndicateRefreshAjaxLink extends AjaxLink implements ISecur
         return new SmallAjaxIndicatorRef();
     }
 
-    private String getAjaxImageReplaceScript() {
-        Collection<? extends Component> containers = getIndicateRefreshContainers();
-        StringBuilder result = new StringBuilder();
-        if (containers != null) {
-            // TODO: refactor JS - fix namespacing across all components
-            result.append("VISURAL").append(this.getMarkupId()).append("Complete = false; window.setTimeout(function() { if (!VISURAL").append(this.getMarkupId()).append("Complete) { ");
-            for (Component container : containers) {
-                result.append("jQuery('#").append(container.getMarkupId()).append("').hide();");
-                result.append("jQuery('#").append(container.getMarkupId()).append("').after('<span class=\"visuralajaxind_").append(this.getId()).append("\">").append(getIndicatorHTML(container)).append("</span>');");
+    private IndicateRefreshCommon.Indicator getIndicator() {
+        return new IndicateRefreshCommon.Indicator() {
+            public Collection<? extends Component> getContainers() {
+                return getIndicateRefreshContainers();
+            }
+
+            public String getIndicatorHTML(Component container) {
+                return IndicateRefreshAjaxLink.this.getIndicatorHTML(container);
             }
-            result.append("} }, ").append(getIndicatorDisplayThresholdMillis()).append(");");
-        }
-        return result.toString();
-    }
 
-    private String getAjaxImageUnreplaceScript() {
-        Collection<? extends Component> containers = getIndicateRefreshContainers();
-        StringBuilder result = new StringBuilder();
-        if (containers != null) {
-            // TODO: refactor JS - fix namespacing across all components
-            result.append("VISURAL").append(IndicateRefreshAjaxLink.this.getMarkupId()).append("Complete = true;");
-            for (Component container : containers) {
-                result.append("jQuery('#").append(container.getMarkupId()).append("').show();");
-                result.append("jQuery('.visuralajaxind_").append(this.getId()).append("').remove();");
+            public int getDelayMillis() {
+                return getIndicatorDisplayThresholdMillis();
             }
-        }
-        return result.toString();
+        };
     }
-    
+
+    @Override
+    protected void onComponentTag(ComponentTag tag) {
+        super.onComponentTag(tag);
+        IndicateRefreshCommon.onComponentTag(tag, getIndicator());
+    }
+
     @Override
     protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
     	super.updateAjaxAttributes(attributes);
@@ -140,43 +136,7 @@ public abstract class IndicateRefreshAjaxLink extends AjaxLink implements ISecur
     }
 
     protected IAjaxCallListener getAjaxCallDecorator() {
-        return new IAjaxCallListener() {
-
-			@Override
-			public CharSequence getBeforeHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getPrecondition(Component component) {
-				return getAjaxImageReplaceScript();
-			}
-
-			@Override
-			public CharSequence getBeforeSendHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getAfterHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getSuccessHandler(Component component) {
-				return getAjaxImageUnreplaceScript();
-			}
-
-			@Override
-			public CharSequence getFailureHandler(Component component) {
-				return getAjaxImageUnreplaceScript();
-			}
-
-			@Override
-			public CharSequence getCompleteHandler(Component component) {
-				return null;
-			}
-        };
+        return IndicateRefreshCommon.getCallListener();
     }
 
     public IPrivilege getRenderPrivilege() {
@@ -19,19 +19,22 @@ package com.visural.wicket.component.submitters;
 import java.util.Collection;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
-import org.apache.wicket.ajax.markup.html.form.AjaxSubmitLink;
+import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.form.Form;
-import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.ResourceReference;
 
+import com.visural.wicket.component.submitters.impl.GuardedAjaxSubmitLink;
+import com.visural.wicket.component.submitters.impl.IndicateRefreshCommon;
 import com.visural.wicket.component.submitters.impl.SmallAjaxIndicatorRef;
 import com.visural.wicket.security.IPrivilege;
 import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
+import com.visural.wicket.util.ResourceUrlCache;
 
 /**
  * An AJAX `SubmitLink` which replaces the given elements with an indicator image, while the update occurs. *Requires JQuery*
@@ -39,7 +42,7 @@ import com.visural.wicket.security.ISecureRenderInstance;
  * @version $Id: IndicateRefreshAjaxSubmitLink.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
-public abstract class IndicateRefreshAjaxSubmitLink extends AjaxSubmitLink implements ISecureRenderInstance, ISecureEnableInstance {
+public abstract class IndicateRefreshAjaxSubmitLink extends GuardedAjaxSubmitLink implements ISecureRenderInstance, ISecureEnableInstance {
     private static final long serialVersionUID = 1L;
     
     public static final int AJAX_SUBMIT_DELAY_WINDOW = 300;
@@ -64,7 +67,8 @@ public abstract class IndicateRefreshAjaxSubmitLink extends AjaxSubmitLink imple
     @Override
     public void renderHead(IHeaderResponse response) {
         super.renderHead(response);
-        response.render(OnDomReadyHeaderItem.forScript("jQuery('<img />').attr('src', '" + urlFor(getRefreshIndicatorImageReference(), new PageParameters()) + "');"));
+        response.render(OnDomReadyHeaderItem.forScript("jQuery('<img />').attr('src', '" + ResourceUrlCache.urlFor(getRefreshIndicatorImageReference()) + "');"));
+        IndicateRefreshCommon.renderHead(response, getIndicator(), autoAddToHeader());
     }
 
 
@@ -95,7 +99,7 @@ public abstract class IndicateRefreshAjaxSubmitLink extends AjaxSubmitLink imple
      * @return the html to be replaced for the given container component.
      */
     protected String getIndicatorHTML(Component container) {
-        return "<img src=\""+urlFor(getRefreshIndicatorImageReference(), new PageParameters())+"\"/>";
+        return "<img src=\""+ResourceUrlCache.urlFor(getRefreshIndicatorImageReference())+"\"/>";
     }
 
     /**
@@ -107,33 +111,26 @@ public abstract class IndicateRefreshAjaxSubmitLink extends AjaxSubmitLink imple
         return new SmallAjaxIndicatorRef();
     }
 
-    private String getAjaxImageReplaceScript() {
-        Collection<? extends Component> containers = getIndicateRefreshContainers();
-        StringBuilder result = new StringBuilder();
-        if (containers != null) {
-            // TODO: refactor JS - fix namespacing across all components
-            result.append("VISURAL").append(this.getMarkupId()).append("Complete = false; window.setTimeout(function() { if (!VISURAL").append(this.getMarkupId()).append("Complete) { ");
-            for (Component container : containers) {
-                result.append("jQuery('#").append(container.getMarkupId()).append("').hide();");
-                result.append("jQuery('#").append(container.getMarkupId()).append("').after('<span class=\"visuralajaxind_").append(this.getId()).append("\">").append(getIndicatorHTML(container)).append("</span>');");
+    private IndicateRefreshCommon.Indicator getIndicator() {
+        return new IndicateRefreshCommon.Indicator() {
+            public Collection<? extends Component> getContainers() {
+                return getIndicateRefreshContainers();
+            }
+
+            public String getIndicatorHTML(Component container) {
+                return IndicateRefreshAjaxSubmitLink.this.getIndicatorHTML(container);
             }
-            result.append("} }, ").append(getIndicatorDisplayThresholdMillis()).append(");");
-        }
-        return result.toString();
-    }
 
-    private String getAjaxImageUnreplaceScript() {
-        Collection<? extends Component> containers = getIndicateRefreshContainers();
-        StringBuilder result = new StringBuilder();
-        if (containers != null) {
-            // TODO: refactor JS - fix namespacing across all components
-            result.append("VISURAL").append(IndicateRefreshAjaxSubmitLink.this.getMarkupId()).append("Complete = true;");
-            for (Component container : containers) {
-                result.append("jQuery('#").append(container.getMarkupId()).append("').show();");
-                result.append("jQuery('.visuralajaxind_").append(this.getId()).append("').remove();");
+            public int getDelayMillis() {
+                return getIndicatorDisplayThresholdMillis();
             }
-        }
-        return result.toString();
+        };
+    }
+
+    @Override
+    protected void onComponentTag(ComponentTag tag) {
+        super.onComponentTag(tag);
+        IndicateRefreshCommon.onComponentTag(tag, getIndicator());
     }
 
     @Override
@@ -143,43 +140,7 @@ public abstract class IndicateRefreshAjaxSubmitLink extends AjaxSubmitLink imple
     }
     
     protected IAjaxCallListener getAjaxCallDecorator() {
-        return new IAjaxCallListener() {
-
-			@Override
-			public CharSequence getBeforeHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getPrecondition(Component component) {
-				return getAjaxImageReplaceScript();
-			}
-
-			@Override
-			public CharSequence getBeforeSendHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getAfterHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getSuccessHandler(Component component) {
-				return getAjaxImageUnreplaceScript();
-			}
-
-			@Override
-			public CharSequence getFailureHandler(Component component) {
-				return getAjaxImageUnreplaceScript();
-			}
-
-			@Override
-			public CharSequence getCompleteHandler(Component component) {
-				return null;
-			}
-        };
+        return IndicateRefreshCommon.getCallListener();
     }
 
     public IPrivilege getRenderPrivilege() {
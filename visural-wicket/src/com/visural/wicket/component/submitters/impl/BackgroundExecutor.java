@@ -0,0 +1,269 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.IClock;
+import com.visural.wicket.util.SystemClock;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.wicket.Application;
+import org.apache.wicket.IApplicationListener;
+import org.apache.wicket.MetaDataKey;
+
+/**
+ * Runs {@link BackgroundTask}s for an application, and holds each task by a
+ * token until the component which started it collects the result.
+ *
+ * By default tasks run on virtual threads where the JVM provides them (Java 21
+ * and later), with at most {@link #DEFAULT_THREADS} + {@link #DEFAULT_QUEUE_SIZE}
+ * tasks in progress, or otherwise on a bounded pool of {@link #DEFAULT_THREADS}
+ * daemon threads with up to {@link #DEFAULT_QUEUE_SIZE} tasks queued. Either is
+ * shut down when the application is destroyed. A task which is rejected (the
+ * executor is full or shut down) is never run on the request thread - it is
+ * completed immediately, with the rejection as its failure. Applications may
+ * `install(...)` an executor of their own instead, in which case they remain
+ * responsible for shutting it down.
+ *
+ * Results which are never collected (e.g. the user left the page) are discarded
+ * {@link #ABANDON_MILLIS} milliseconds after the task completes.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public final class BackgroundExecutor {
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+    public static final long ABANDON_MILLIS = 10 * 60 * 1000L;
+
+    private static final MetaDataKey<BackgroundExecutor> EXECUTOR = new MetaDataKey<BackgroundExecutor>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private final Executor executor;
+    private final IClock clock;
+    private final ConcurrentMap<String, BackgroundTask> tasks = new ConcurrentHashMap<String, BackgroundTask>();
+
+    BackgroundExecutor(Executor executor, IClock clock) {
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the background executor for the given application, creating the
+     * default bounded pool on first use.
+     * @param app
+     * @return
+     */
+    public static BackgroundExecutor get(Application app) {
+        BackgroundExecutor result = app.getMetaData(EXECUTOR);
+        if (result == null) {
+            synchronized (app) {
+                result = app.getMetaData(EXECUTOR);
+                if (result == null) {
+                    final ExecutorService pool = newDefaultExecutor();
+                    app.getApplicationListeners().add(new IApplicationListener() {
+                        public void onAfterInitialized(Application application) {
+                        }
+
+                        public void onBeforeDestroyed(Application application) {
+                            pool.shutdownNow();
+                        }
+                    });
+                    result = new BackgroundExecutor(pool, SystemClock.INSTANCE);
+                    app.setMetaData(EXECUTOR, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs the given application's background tasks on the given executor,
+     * rather than the default pool. Must be called before the first task is
+     * submitted, typically from `Application.init()`.
+     * @param app
+     * @param executor
+     */
+    public static void install(Application app, Executor executor) {
+        synchronized (app) {
+            if (app.getMetaData(EXECUTOR) != null) {
+                throw new IllegalStateException("A background executor is already in use for this application.");
+            }
+            app.setMetaData(EXECUTOR, new BackgroundExecutor(executor, SystemClock.INSTANCE));
+        }
+    }
+
+    /**
+     * Starts the given task.
+     * @param task
+     * @return the token by which the task may be found
+     */
+    public String submit(BackgroundTask task) {
+        discardAbandoned();
+        String token = UUID.randomUUID().toString();
+        tasks.put(token, task);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.fail(e);
+        }
+        return token;
+    }
+
+    /**
+     * @param token
+     * @return the task for the given token, or null if there is none
+     */
+    public BackgroundTask find(String token) {
+        return tasks.get(token);
+    }
+
+    /**
+     * Discards the task for the given token. A task which is not yet done is
+     * cancelled - it is interrupted if running, or otherwise never run.
+     * @param token
+     */
+    public void remove(String token) {
+        BackgroundTask task = tasks.remove(token);
+        if (task != null && !task.isDone()) {
+            task.cancel(new CancellationException("Background task abandoned."));
+        }
+    }
+
+    private void discardAbandoned() {
+        long cutoff = clock.currentTimeMillis() - ABANDON_MILLIS;
+        for (Iterator<Map.Entry<String, BackgroundTask>> it = tasks.entrySet().iterator(); it.hasNext();) {
+            BackgroundTask task = it.next().getValue();
+            if (task.isDone() && task.getCompletedAt() < cutoff) {
+                it.remove();
+            }
+        }
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            return new BoundedExecutorService(virtual, DEFAULT_THREADS + DEFAULT_QUEUE_SIZE);
+        }
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "visural-background-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return a virtual thread per task executor, or null if the JVM does not
+     *         provide virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // e.g. virtual threads are a disabled preview feature
+            return null;
+        }
+    }
+
+    /**
+     * Limits the number of tasks in progress on an otherwise unbounded
+     * executor, rejecting tasks beyond the limit.
+     */
+    private static final class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        private BoundedExecutorService(ExecutorService delegate, int limit) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(limit);
+        }
+
+        public void execute(final Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("Too many background tasks in progress.");
+            }
+            try {
+                delegate.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            command.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.IClock;
+import com.visural.wicket.util.JavaScriptStrings;
+import com.visural.wicket.util.SystemClock;
+import java.util.concurrent.TimeoutException;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.attributes.AjaxCallListener;
+import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
+
+/**
+ * Polls a {@link BackgroundTask} started by an {@link IndicateModalAsyncComponent}.
+ *
+ * `start(...)` hands the task to the application's {@link BackgroundExecutor}
+ * and leaves the modal indicator open, and the client then calls back at the
+ * poll interval. Each poll only checks the task's progress, so the page is never
+ * locked for longer than that - once the task is done the modal is closed and
+ * `onComplete(...)` is called on the polling request's thread. If the task has
+ * not completed within the component's timeout, the first poll after that
+ * cancels the task and completes it with a `TimeoutException` as its failure,
+ * the modal displays the component's timeout HTML, polling stops and
+ * `onComplete(...)` is called.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public abstract class BackgroundProgressBehavior extends AbstractDefaultAjaxBehavior {
+    private static final long serialVersionUID = 1L;
+
+    private final IClock clock;
+    private int pollIntervalMillis = 1000;
+    private String token = null;
+    private long startedAt = 0;
+
+    public BackgroundProgressBehavior() {
+        this(SystemClock.INSTANCE);
+    }
+
+    BackgroundProgressBehavior(IClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Starts the given task in the background, abandoning any task this
+     * behavior previously started.
+     * @param target
+     * @param task
+     */
+    public void start(AjaxRequestTarget target, BackgroundTask task) {
+        BackgroundExecutor executor = BackgroundExecutor.get(getComponent().getApplication());
+        if (token != null) {
+            executor.remove(token);
+        }
+        token = executor.submit(task);
+        startedAt = clock.currentTimeMillis();
+        target.appendJavaScript("VisuralOverlay.poll(" + getCallbackFunction() + ", " + pollIntervalMillis + ");");
+    }
+
+    /**
+     * @return true if a task has been started which has not yet been collected
+     */
+    public boolean isRunning() {
+        return token != null;
+    }
+
+    @Override
+    protected void respond(AjaxRequestTarget target) {
+        BackgroundTask task = (token == null ? null : BackgroundExecutor.get(getComponent().getApplication()).find(token));
+        if (task == null) {
+            token = null;
+            target.appendJavaScript("VisuralOverlay.unmodal();");
+        } else if (task.isDone()) {
+            collect(target, task, "VisuralOverlay.unmodal();");
+        } else if (clock.currentTimeMillis() - startedAt > getTimeoutMillis()) {
+            task.cancel(new TimeoutException("Background task did not complete within " + getTimeoutMillis() + "ms."));
+            collect(target, task, "VisuralOverlay.expire('" + JavaScriptStrings.escape(getComponentTimeoutHTML()) + "');");
+        } else {
+            target.appendJavaScript("VisuralOverlay.progress(" + task.getProgress() + ");");
+        }
+    }
+
+    private void collect(AjaxRequestTarget target, BackgroundTask task, String script) {
+        BackgroundExecutor.get(getComponent().getApplication()).remove(token);
+        token = null;
+        target.appendJavaScript(script);
+        onComplete(target, task);
+    }
+
+    private int getTimeoutMillis() {
+        return ((IndicateModalAsyncComponent) getComponent()).getTimeoutMillis();
+    }
+
+    private String getComponentTimeoutHTML() {
+        return ((IndicateModalAsyncComponent) getComponent()).getTimeoutHTML();
+    }
+
+    /**
+     * Called on a request thread once the task is done, or has timed out.
+     * @param target
+     * @param task
+     */
+    protected abstract void onComplete(AjaxRequestTarget target, BackgroundTask task);
+
+    @Override
+    protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
+        super.updateAjaxAttributes(attributes);
+        attributes.getAjaxCallListeners().add(new AjaxCallListener().onFailure("VisuralOverlay.unmodal();"));
+    }
+
+    public int getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public void setPollIntervalMillis(int pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+}
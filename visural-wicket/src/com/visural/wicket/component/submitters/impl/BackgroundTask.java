@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.SystemClock;
+
+/**
+ * A unit of work run off the request thread by an IndicateModal component (see
+ * `runInBackground(...)`), while the modal indicator polls for its progress.
+ *
+ * The task runs without a request cycle, so it must not touch components,
+ * models or the session - copy whatever it needs when the task is created, and
+ * apply its results in the component's `onBackgroundComplete(...)`, which is
+ * called on a request thread once the task is done.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public abstract class BackgroundTask implements Runnable {
+
+    private volatile int progress = 0;
+    private volatile boolean done = false;
+    private volatile long completedAt = 0;
+    private volatile Throwable failure = null;
+    private volatile boolean cancelled = false;
+    private Thread runner = null;
+
+    public final void run() {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            runner = Thread.currentThread();
+        }
+        Throwable result = null;
+        try {
+            execute();
+        } catch (Throwable t) {
+            result = t;
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            complete(result);
+        }
+    }
+
+    /**
+     * Completes the task with the given failure, without running it (e.g. when
+     * it is rejected by the executor).
+     * @param t
+     */
+    void fail(Throwable t) {
+        complete(t);
+    }
+
+    /**
+     * Completes the task with the given failure, and interrupts it if it is
+     * running. A task which has not yet started will not be run.
+     * @param reason
+     */
+    void cancel(Throwable reason) {
+        cancelled = true;
+        complete(reason);
+        synchronized (this) {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+
+    private synchronized void complete(Throwable t) {
+        if (!done) {
+            failure = t;
+            completedAt = SystemClock.INSTANCE.currentTimeMillis();
+            done = true;
+        }
+    }
+
+    /**
+     * Performs the work of the task.
+     * @throws Exception
+     */
+    protected abstract void execute() throws Exception;
+
+    /**
+     * Reports the progress of the task, as a percentage from 0 to 100, which is
+     * displayed in any element with the class `modalprogress` in the component's
+     * indicator HTML.
+     * @param percent
+     */
+    protected void setProgress(int percent) {
+        this.progress = Math.max(0, Math.min(100, percent));
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return true if the task was abandoned (e.g. it timed out) - long running
+     *         tasks should check this, or respond to interruption, and stop
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the time the task completed, or 0 if it is still running
+     */
+    public long getCompletedAt() {
+        return completedAt;
+    }
+
+    /**
+     * @return the exception or error thrown by `execute()` (or the reason the
+     *         task could not be run), or null if the task completed normally
+     *         or has not completed
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import org.apache.wicket.ajax.AjaxEventBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.model.IModel;
+
+/**
+ * An `AjaxLink` whose requests are guarded by a {@link SubmitGuard} - each
+ * request is sent on the link's own active channel, and requests within the
+ * duplicate submit window are dropped on the server.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public abstract class GuardedAjaxLink<T> extends AjaxLink<T> {
+    private static final long serialVersionUID = 1L;
+    private final SubmitGuard guard = new SubmitGuard();
+
+    public GuardedAjaxLink(String id) {
+        super(id);
+    }
+
+    public GuardedAjaxLink(String id, IModel<T> model) {
+        super(id, model);
+    }
+
+    /**
+     * Set the server side idempotency window - requests from this component
+     * which arrive within the given number of milliseconds of the last accepted
+     * request are dropped (default: 0, off).
+     * @param windowMillis
+     */
+    public void setDuplicateSubmitWindowMillis(int windowMillis) {
+        guard.setWindowMillis(windowMillis);
+    }
+
+    /**
+     * @return the window in milliseconds after an accepted request, in which
+     *         further requests from this component are dropped as duplicates
+     *         (default: 0, off)
+     */
+    public int getDuplicateSubmitWindowMillis() {
+        return guard.getWindowMillis();
+    }
+
+    @Override
+    protected AjaxEventBehavior newAjaxEventBehavior(String event) {
+        return new AjaxEventBehavior(event) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onEvent(AjaxRequestTarget target) {
+                if (guard.accept()) {
+                    onClick(target);
+                }
+            }
+
+            @Override
+            protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
+                super.updateAjaxAttributes(attributes);
+                GuardedAjaxLink.this.updateAjaxAttributes(attributes);
+            }
+        };
+    }
+
+    @Override
+    protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
+        super.updateAjaxAttributes(attributes);
+        SubmitGuard.updateAjaxAttributes(this, attributes);
+    }
+}
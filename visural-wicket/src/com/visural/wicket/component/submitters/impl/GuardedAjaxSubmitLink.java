@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
+import org.apache.wicket.ajax.form.AjaxFormSubmitBehavior;
+import org.apache.wicket.ajax.markup.html.form.AjaxSubmitLink;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.html.form.Form;
+
+/**
+ * An `AjaxSubmitLink` whose requests are guarded by a {@link SubmitGuard} -
+ * each request is sent on the link's own active channel, and requests within
+ * the duplicate submit window are dropped on the server, before the form is
+ * processed.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public abstract class GuardedAjaxSubmitLink extends AjaxSubmitLink {
+    private static final long serialVersionUID = 1L;
+    private final SubmitGuard guard = new SubmitGuard();
+
+    public GuardedAjaxSubmitLink(String id) {
+        super(id);
+    }
+
+    public GuardedAjaxSubmitLink(String id, Form<?> form) {
+        super(id, form);
+    }
+
+    /**
+     * Set the server side idempotency window - requests from this component
+     * which arrive within the given number of milliseconds of the last accepted
+     * request are dropped (default: 0, off).
+     * @param windowMillis
+     */
+    public void setDuplicateSubmitWindowMillis(int windowMillis) {
+        guard.setWindowMillis(windowMillis);
+    }
+
+    /**
+     * @return the window in milliseconds after an accepted request, in which
+     *         further requests from this component are dropped as duplicates
+     *         (default: 0, off)
+     */
+    public int getDuplicateSubmitWindowMillis() {
+        return guard.getWindowMillis();
+    }
+
+    /**
+     * As `AjaxSubmitLink`'s behavior, but dropping duplicate requests.
+     */
+    @Override
+    protected AjaxFormSubmitBehavior newAjaxFormSubmitBehavior(String event) {
+        return new AjaxFormSubmitBehavior(event) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onEvent(AjaxRequestTarget target) {
+                if (guard.accept()) {
+                    super.onEvent(target);
+                }
+            }
+
+            @Override
+            protected void onError(AjaxRequestTarget target) {
+                GuardedAjaxSubmitLink.this.onError(target, getForm());
+            }
+
+            @Override
+            protected Form<?> findForm() {
+                return GuardedAjaxSubmitLink.this.getForm();
+            }
+
+            @Override
+            protected void onComponentTag(ComponentTag tag) {
+                // write the onclick handler only if link is enabled
+                if (isLinkEnabled()) {
+                    super.onComponentTag(tag);
+                }
+            }
+
+            @Override
+            public boolean getDefaultProcessing() {
+                return GuardedAjaxSubmitLink.this.getDefaultFormProcessing();
+            }
+
+            @Override
+            protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
+                super.updateAjaxAttributes(attributes);
+                GuardedAjaxSubmitLink.this.updateAjaxAttributes(attributes);
+            }
+
+            @Override
+            protected void onSubmit(AjaxRequestTarget target) {
+                GuardedAjaxSubmitLink.this.onSubmit(target, getForm());
+            }
+
+            @Override
+            protected void onAfterSubmit(AjaxRequestTarget target) {
+                GuardedAjaxSubmitLink.this.onAfterSubmit(target, getForm());
+            }
+        };
+    }
+
+    @Override
+    protected void updateAjaxAttributes(AjaxRequestAttributes attributes) {
+        super.updateAjaxAttributes(attributes);
+        SubmitGuard.updateAjaxAttributes(this, attributes);
+    }
+}
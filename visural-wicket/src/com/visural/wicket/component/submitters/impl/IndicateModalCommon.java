@@ -20,18 +20,11 @@ import java.io.Serializable;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.ajax.attributes.IAjaxCallListener;
-import org.apache.wicket.behavior.Behavior;
-import org.apache.wicket.markup.head.CssHeaderItem;
-import org.apache.wicket.markup.head.IHeaderResponse;
-import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
-import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.link.AbstractLink;
-import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.ResourceReference;
 
-import com.jquery.JQueryBGIFrameResourceReference;
-import com.visural.javascript.JQueryCenterResourceReference;
 import com.visural.wicket.util.PageParamFactory;
+import com.visural.wicket.util.ResourceUrlCache;
 
 /**
  * @version $Id: IndicateModalCommon.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
@@ -42,40 +35,24 @@ public class IndicateModalCommon implements Serializable {
 
     private final IndicateModalComponent imComponent;
     private final Component component;
+    // the scripts for the current render, see onConfigure()
+    private transient String displayScript = null;
+    private transient IAjaxCallListener callListener = null;
 
     public IndicateModalCommon(IndicateModalComponent com) {
         this.imComponent = com;
         this.component = (Component) imComponent;
-        if (com.autoAddToHeader()) {
-            ((Component) com).add(new ModalHeaderContributor());
-            component.add(new Behavior() {
-                @Override
-                public void renderHead(Component component, IHeaderResponse response) {
-                    response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryCenterResourceReference()));
-                }
-            });
-            component.add(new Behavior() {
-                @Override
-                public void renderHead(Component component, IHeaderResponse response) {
-                    response.render(CssHeaderItem.forReference(new ModalCSSRef()));
-                }
-            });
-            if (com.isSupportIE6()) {
-                component.add(new Behavior() {
-                    @Override
-                    public void renderHead(Component component, IHeaderResponse response) {
-                    	response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryBGIFrameResourceReference()));
-                    }
-                });
-            }
-        }
-        // preload image
-        ((Component) com).add(new Behavior() {
-            @Override
-            public void renderHead(Component component, IHeaderResponse response) {
-            	response.render(OnDomReadyHeaderItem.forScript("jQuery('<img />').attr('src', '" + component.urlFor(getIndicatorImage(), new PageParameters()) + "');"));
-            }
-        });
+        component.add(ModalHeaderContributor.get());
+    }
+
+    /**
+     * Discards the scripts built for the previous render. Called from the
+     * component's `onConfigure()`, so the indicator HTML is built only once
+     * per render.
+     */
+    public void onConfigure() {
+        displayScript = null;
+        callListener = null;
     }
 
     private ResourceReference getIndicatorImage() {
@@ -83,7 +60,7 @@ public class IndicateModalCommon implements Serializable {
     }
 
     public String getDefaultIndicatorHTML() {
-        return "<div class=\"modalborder\"><br/><img src=\"" + component.urlFor(getIndicatorImage(), new PageParameters()) + "\"/><br/><br/>Please wait...<br/><br/></div>";
+        return "<div class=\"modalborder\"><br/><img src=\"" + ResourceUrlCache.urlFor(getIndicatorImage()) + "\"/><br/><br/>Please wait...<br/><br/></div>";
     }
 
     public String getDefaultTimeoutHTML() {
@@ -104,61 +81,36 @@ public class IndicateModalCommon implements Serializable {
         if (!comEnabled()) {
             return "";
         }
-        StringBuilder result = new StringBuilder();
-        result.append("jQuery('#visuraloverlay_high').show();");
-        if (imComponent.isSupportIE6()) {
-            result.append("jQuery('#visuraloverlay_high').bgiframe();");
+        if (displayScript == null) {
+            StringBuilder result = new StringBuilder();
+            result.append("VisuralOverlay.modal('")
+                  .append(imComponent.getIndicatorHTML())
+                  .append("', ").append(imComponent.isSupportIE6()).append(");");
+            displayScript = result.toString();
         }
-        result.append("jQuery('#visuraloverlay_high').height(jQuery(document).height()); jQuery('#visuraloverlaycontent_high').html('")
-              .append(imComponent.getIndicatorHTML())
-              .append("'); jQuery('#visuraloverlaycontent_high').center(); jQuery('#visuraloverlaycontent_high').show();");
-        return result.toString();
+        return displayScript;
     }
 
     public String getModalCloseScript() {
-        StringBuilder result = new StringBuilder();
-        result.append("jQuery('#visuraloverlay_high').hide();");
-        result.append("jQuery('#visuraloverlaycontent_high').hide();");
-        return result.toString();
+        return "VisuralOverlay.unmodal();";
     }
 
-    public IAjaxCallListener getAjaxCallDecorator() {
-        return new IAjaxCallListener() {
-
-			@Override
-			public CharSequence getBeforeHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getPrecondition(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getBeforeSendHandler(Component component) {
-				return getModalDisplayScript();
-			}
-
-			@Override
-			public CharSequence getAfterHandler(Component component) {
-				return null;
-			}
-
-			@Override
-			public CharSequence getSuccessHandler(Component component) {
-				return getModalCloseScript();
-			}
-
-			@Override
-			public CharSequence getFailureHandler(Component component) {
-				return getModalCloseScript();
-			}
+    /**
+     * @return script which closes the modal after a successful request, unless
+     *         the request started a background task which is being polled
+     */
+    public String getModalSettleScript() {
+        return "VisuralOverlay.settle();";
+    }
 
-			@Override
-			public CharSequence getCompleteHandler(Component component) {
-				return null;
-			}
-        };
+    /**
+     * @return the Ajax call listener for the component's indicator
+     *         configuration, which is built once per render
+     */
+    public IAjaxCallListener getAjaxCallDecorator() {
+        if (callListener == null) {
+            callListener = new IndicatorCallListener(null, getModalDisplayScript(), getModalSettleScript(), getModalCloseScript());
+        }
+        return callListener;
     }
 }
@@ -21,8 +21,6 @@ package com.visural.wicket.component.submitters.impl;
  *
  * @author Richard Nichols
  */
-public interface IndicateModalComponent {
-    boolean autoAddToHeader();
-    boolean isSupportIE6();
+public interface IndicateModalComponent extends ModalComponent {
     String getIndicatorHTML();
 }
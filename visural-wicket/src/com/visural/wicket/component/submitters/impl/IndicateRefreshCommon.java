@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.ContentDigest;
+import com.visural.wicket.util.JavaScriptStrings;
+import java.util.Collection;
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.attributes.IAjaxCallListener;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptHeaderItem;
+import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
+
+/**
+ * Renders the client side state of an indicate refresh link for the shared
+ * `VisuralRefresh` runtime (see visural.refresh.js).
+ *
+ * The link's indicator configuration is written to a single
+ * `data-visural-refresh` attribute, holding the display delay and, for each
+ * container, its markup id and the key of its indicator HTML. The indicator
+ * HTML is registered once per distinct template on the page, so a single Ajax
+ * call listener is shared by every link.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public final class IndicateRefreshCommon {
+
+    private static final IAjaxCallListener CALL_LISTENER = new IndicatorCallListener(
+            "VisuralRefresh.start(attrs.c);", null, "VisuralRefresh.end(attrs.c);", "VisuralRefresh.end(attrs.c);");
+
+    private IndicateRefreshCommon() {
+    }
+
+    /**
+     * @return the Ajax call listener shared by all indicate refresh links - its
+     *         scripts find the link's configuration by the link's markup id
+     */
+    public static IAjaxCallListener getCallListener() {
+        return CALL_LISTENER;
+    }
+
+    /**
+     * Describes the containers of a link, for `renderHead` and `onComponentTag`.
+     */
+    public interface Indicator {
+        Collection<? extends Component> getContainers();
+        String getIndicatorHTML(Component container);
+        int getDelayMillis();
+    }
+
+    /**
+     * Renders the shared runtime (if `autoAdd`) and the indicator templates
+     * used by the given link.
+     * @param response
+     * @param indicator
+     * @param autoAdd
+     */
+    public static void renderHead(IHeaderResponse response, Indicator indicator, boolean autoAdd) {
+        if (autoAdd) {
+            response.render(JavaScriptReferenceHeaderItem.forReference(new RefreshJSRef()));
+        }
+        Collection<? extends Component> containers = indicator.getContainers();
+        if (containers != null) {
+            for (Component container : containers) {
+                String html = indicator.getIndicatorHTML(container);
+                String key = getTemplateKey(html);
+                response.render(JavaScriptHeaderItem.forScript("(window.VISURALRefreshTemplates = window.VISURALRefreshTemplates || {})['"
+                        + key + "'] = '" + JavaScriptStrings.escape(html) + "';", "VISURALRefresh" + key));
+            }
+        }
+    }
+
+    /**
+     * Writes the `data-visural-refresh` attribute for the given link.
+     * @param tag
+     * @param indicator
+     */
+    public static void onComponentTag(ComponentTag tag, Indicator indicator) {
+        Collection<? extends Component> containers = indicator.getContainers();
+        if (containers == null) {
+            return;
+        }
+        StringBuilder cfg = new StringBuilder();
+        cfg.append("{\"d\":").append(indicator.getDelayMillis()).append(",\"c\":[");
+        boolean first = true;
+        for (Component container : containers) {
+            if (!first) {
+                cfg.append(',');
+            }
+            first = false;
+            cfg.append("[\"").append(container.getMarkupId()).append("\",\"")
+               .append(getTemplateKey(indicator.getIndicatorHTML(container))).append("\"]");
+        }
+        cfg.append("]}");
+        tag.put("data-visural-refresh", cfg.toString());
+    }
+
+    private static String getTemplateKey(String html) {
+        return "r" + ContentDigest.sha1(html);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.attributes.IAjaxCallListener;
+
+/**
+ * An immutable Ajax call listener for the indicator submitters, which returns
+ * the same scripts for every call.
+ *
+ * The scripts are computed once for a given indicator configuration, so one
+ * listener may be shared by every link with that configuration - or, where the
+ * scripts do not depend on the link at all, by every link on every page -
+ * rather than being rebuilt on each `updateAjaxAttributes(...)`.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public final class IndicatorCallListener implements IAjaxCallListener {
+
+    private final CharSequence precondition;
+    private final CharSequence beforeSend;
+    private final CharSequence success;
+    private final CharSequence failure;
+
+    public IndicatorCallListener(CharSequence precondition, CharSequence beforeSend, CharSequence success, CharSequence failure) {
+        this.precondition = precondition;
+        this.beforeSend = beforeSend;
+        this.success = success;
+        this.failure = failure;
+    }
+
+    public CharSequence getBeforeHandler(Component component) {
+        return null;
+    }
+
+    public CharSequence getPrecondition(Component component) {
+        return precondition;
+    }
+
+    public CharSequence getBeforeSendHandler(Component component) {
+        return beforeSend;
+    }
+
+    public CharSequence getAfterHandler(Component component) {
+        return null;
+    }
+
+    public CharSequence getSuccessHandler(Component component) {
+        return success;
+    }
+
+    public CharSequence getFailureHandler(Component component) {
+        return failure;
+    }
+
+    public CharSequence getCompleteHandler(Component component) {
+        return null;
+    }
+}
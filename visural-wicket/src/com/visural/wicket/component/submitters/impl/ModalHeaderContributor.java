@@ -16,21 +16,60 @@
  */
 package com.visural.wicket.component.submitters.impl;
 
+import com.jquery.JQueryBGIFrameResourceReference;
+import com.visural.javascript.JQueryCenterResourceReference;
+import com.visural.wicket.util.ResourceUrlCache;
 import org.apache.wicket.Component;
 import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.head.JavaScriptReferenceHeaderItem;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 
 /**
+ * Contributes the resources required by modal components - the shared overlay
+ * manager, which creates a single overlay element on demand and reuses it for
+ * all dialogs and modal components on the page, along with its CSS and
+ * JavaScript dependencies.
+ *
+ * The contributor holds no state, so a single shared instance (see `get()`) is
+ * added to every confirmer and submitter, rather than separate behaviors per
+ * resource and component. Resources are only contributed for a
+ * {@link ModalComponent} if its `autoAddToHeader()` returns true.
+ *
  * @version $Id: ModalHeaderContributor.java 261 2011-03-08 20:53:16Z tibes80@gmail.com $
  * @author Richard Nichols
  */
 public class ModalHeaderContributor extends Behavior {
 
     private static final long serialVersionUID = 1L;
+    private static final ModalHeaderContributor INSTANCE = new ModalHeaderContributor();
+
+    /**
+     * @return the shared contributor instance
+     */
+    public static ModalHeaderContributor get() {
+        return INSTANCE;
+    }
 
     @Override
     public void renderHead(Component component, IHeaderResponse response) {
-    	response.render(OnDomReadyHeaderItem.forScript("jQuery(document.body).append('<div id=\"visuraloverlay_high\"></div><div id=\"visuraloverlaycontent_high\"></div>');"));
+        ModalComponent modal = (component instanceof ModalComponent ? (ModalComponent) component : null);
+        if (modal == null || modal.autoAddToHeader()) {
+            response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryCenterResourceReference()));
+            response.render(JavaScriptReferenceHeaderItem.forReference(new ModalJSRef()));
+            response.render(CssHeaderItem.forReference(new ModalCSSRef()));
+            if (modal != null && modal.isSupportIE6()) {
+                response.render(JavaScriptReferenceHeaderItem.forReference(new JQueryBGIFrameResourceReference()));
+            }
+        }
+        if (component instanceof IndicateModalComponent) {
+            // preload image
+            response.render(OnDomReadyHeaderItem.forScript("jQuery('<img />').attr('src', '" + ResourceUrlCache.urlFor(new LargeAjaxIndicatorRef()) + "');"));
+        }
+    }
+
+    private Object readResolve() {
+        return INSTANCE;
     }
 }
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.IClock;
+import com.visural.wicket.util.SystemClock;
+import java.io.Serializable;
+import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxChannel;
+import org.apache.wicket.ajax.attributes.AjaxRequestAttributes;
+
+/**
+ * Suppresses duplicate submits from a single submitter component.
+ *
+ * On the client, a component may only have one request in flight at a time -
+ * Ajax requests are sent on an "active" channel of their own, which drops
+ * requests made while one is outstanding, and non-Ajax links ignore clicks after
+ * the first until the modal is closed or the page is shown again.
+ *
+ * On the server, an optional idempotency window drops any request from the
+ * component which arrives within the given number of milliseconds of the last
+ * one that was accepted.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public class SubmitGuard implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final IClock clock;
+    private int windowMillis = 0;
+    private long lastAccepted = 0;
+    private boolean accepted = false;
+
+    public SubmitGuard() {
+        this(SystemClock.INSTANCE);
+    }
+
+    public SubmitGuard(IClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns true if a request should be processed, or false if it is a
+     * duplicate, arriving within the idempotency window of the last accepted
+     * request.
+     * @return
+     */
+    public boolean accept() {
+        long now = clock.currentTimeMillis();
+        if (accepted && windowMillis > 0 && now - lastAccepted < windowMillis) {
+            return false;
+        }
+        accepted = true;
+        lastAccepted = now;
+        return true;
+    }
+
+    public int getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Set the server side idempotency window in milliseconds (default: 0, off).
+     * @param windowMillis
+     */
+    public void setWindowMillis(int windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Sends the component's Ajax requests on a channel of its own, dropping any
+     * request made while another is still in flight.
+     * @param component
+     * @param attributes
+     */
+    public static void updateAjaxAttributes(Component component, AjaxRequestAttributes attributes) {
+        attributes.setChannel(new AjaxChannel("visural" + component.getMarkupId(), AjaxChannel.Type.ACTIVE));
+    }
+
+    /**
+     * Returns an onclick prefix which ignores further clicks on a non-Ajax link
+     * until the modal is closed, or the page is shown again (e.g. restored from
+     * the browser's back/forward cache). Requires visural.modal.js.
+     * @param component
+     * @return
+     */
+    public static String getClickGuardScript(Component component) {
+        return "if (!VisuralOverlay.claim('" + component.getMarkupId() + "')) { return false; }";
+    }
+}
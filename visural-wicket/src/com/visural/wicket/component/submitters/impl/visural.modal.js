@@ -0,0 +1,166 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+/*
+ * Shared overlay manager for dialogs and modal confirmers / indicators.
+ *
+ * A single overlay element is created on first use for each of the two layers -
+ * `#visuraloverlay` beneath dialogs and `#visuraloverlay_high` beneath modal
+ * content - and is reused by every component on the page. The overlay is fixed
+ * to the viewport, so the document height is only measured for IE6.
+ *
+ * Confirmation prompts are shown from templates registered once per page in
+ * `window.VISURALConfirmTemplates`, with the action to run on confirmation
+ * supplied by the link that opened the prompt.
+ *
+ * Non-Ajax submitters `claim` their id on click, ignoring further clicks until
+ * the modal is closed or the page is shown again.
+ *
+ * While a submitter's background task runs, the modal indicator stays open and
+ * `poll` calls back to the server at the given interval until the task is done.
+ * The timeout is enforced by the server, which abandons the task and responds
+ * with `expire` to display the timeout message instead.
+ */
+var VisuralOverlay = VisuralOverlay || {
+    dialogs: [],
+    pending: null,
+    polling: null,
+    busy: {},
+
+    overlay: function(id, ie6) {
+        var ovl = jQuery('#' + id);
+        if (ovl.length == 0) {
+            ovl = jQuery('<div id="' + id + '"></div>').appendTo(document.body);
+            if (id == 'visuraloverlay') {
+                ovl.click(function() {
+                    var top = VisuralOverlay.dialogs[VisuralOverlay.dialogs.length - 1];
+                    if (top && top.clickToClose) {
+                        VisuralOverlay.close(top.id);
+                    }
+                });
+            }
+        }
+        if (ie6) {
+            ovl.css('position', 'absolute').height(jQuery(document).height()).bgiframe();
+        } else {
+            ovl.css({position: 'fixed', height: '100%'});
+        }
+        return ovl;
+    },
+
+    open: function(id, clickToClose, ie6) {
+        VisuralOverlay.remove(id);
+        VisuralOverlay.dialogs.push({id: id, clickToClose: clickToClose});
+        VisuralOverlay.overlay('visuraloverlay', ie6).show();
+        jQuery('#' + id).center().show();
+    },
+
+    close: function(id) {
+        jQuery('#' + id).hide();
+        VisuralOverlay.remove(id);
+        if (VisuralOverlay.dialogs.length == 0) {
+            jQuery('#visuraloverlay').hide();
+        }
+    },
+
+    remove: function(id) {
+        for (var n = VisuralOverlay.dialogs.length - 1; n >= 0; n--) {
+            if (VisuralOverlay.dialogs[n].id == id) {
+                VisuralOverlay.dialogs.splice(n, 1);
+            }
+        }
+    },
+
+    modal: function(html, ie6) {
+        VisuralOverlay.overlay('visuraloverlay_high', ie6).show();
+        var content = jQuery('#visuraloverlaycontent_high');
+        if (content.length == 0) {
+            content = jQuery('<div id="visuraloverlaycontent_high"></div>').appendTo(document.body);
+        }
+        content.html(html).center().show();
+    },
+
+    confirm: function(key, action, ie6) {
+        VisuralOverlay.modal(window.VISURALConfirmTemplates[key], ie6);
+        VisuralOverlay.pending = action;
+    },
+
+    confirmed: function() {
+        var action = VisuralOverlay.pending;
+        VisuralOverlay.unmodal();
+        if (action) {
+            action();
+        }
+    },
+
+    poll: function(callback, interval) {
+        VisuralOverlay.polling = {
+            callback: callback,
+            interval: interval
+        };
+        VisuralOverlay.progress(null);
+    },
+
+    progress: function(percent) {
+        var p = VisuralOverlay.polling;
+        if (!p) {
+            return;
+        }
+        if (percent != null) {
+            jQuery('#visuraloverlaycontent_high .modalprogress').text(percent + '%');
+        }
+        p.timer = setTimeout(p.callback, p.interval);
+    },
+
+    expire: function(timeoutHtml) {
+        VisuralOverlay.polling = null;
+        jQuery('#visuraloverlaycontent_high').html(timeoutHtml).center();
+    },
+
+    settle: function() {
+        if (!VisuralOverlay.polling) {
+            VisuralOverlay.unmodal();
+        }
+    },
+
+    claim: function(id) {
+        if (VisuralOverlay.busy[id]) {
+            return false;
+        }
+        VisuralOverlay.busy[id] = true;
+        return true;
+    },
+
+    unmodal: function() {
+        VisuralOverlay.busy = {};
+        if (VisuralOverlay.polling) {
+            clearTimeout(VisuralOverlay.polling.timer);
+            VisuralOverlay.polling = null;
+        }
+        VisuralOverlay.pending = null;
+        jQuery('#visuraloverlay_high').hide();
+        jQuery('#visuraloverlaycontent_high').hide();
+    }
+};
+
+if (!VisuralOverlay.pageshowBound) {
+    VisuralOverlay.pageshowBound = true;
+    // a page restored from the back/forward cache is usable again
+    jQuery(window).bind('pageshow', function() {
+        VisuralOverlay.unmodal();
+    });
+}
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+
+/*
+ * Shared client runtime for refresh indicators.
+ *
+ * Each indicate refresh link carries its configuration in a single
+ * `data-visural-refresh` attribute - the delay before the indicator is shown,
+ * and the markup id of each container to be replaced, along with the key of
+ * its indicator template in `window.VISURALRefreshTemplates` (registered once
+ * per distinct template on the page). The link's Ajax call listener calls
+ * `start` and `end` with the link's markup id.
+ */
+var VisuralRefresh = VisuralRefresh || {
+    active: {},
+
+    start: function(id) {
+        var cfg = jQuery('#' + id).attr('data-visural-refresh');
+        if (!cfg) {
+            return;
+        }
+        cfg = jQuery.parseJSON(cfg);
+        VisuralRefresh.end(id);
+        var state = {containers: [], indicators: []};
+        state.timer = setTimeout(function() {
+            state.timer = null;
+            for (var n = 0; n < cfg.c.length; n++) {
+                var container = jQuery('#' + cfg.c[n][0]);
+                var indicator = jQuery('<span class="visuralajaxind"></span>').html(window.VISURALRefreshTemplates[cfg.c[n][1]]);
+                container.hide().after(indicator);
+                state.containers.push(cfg.c[n][0]);
+                state.indicators.push(indicator);
+            }
+        }, cfg.d);
+        VisuralRefresh.active[id] = state;
+    },
+
+    end: function(id) {
+        var state = VisuralRefresh.active[id];
+        if (!state) {
+            return;
+        }
+        delete VisuralRefresh.active[id];
+        if (state.timer) {
+            clearTimeout(state.timer);
+        }
+        for (var n = 0; n < state.containers.length; n++) {
+            jQuery('#' + state.containers[n]).show();
+            state.indicators[n].remove();
+        }
+    }
+};
@@ -33,6 +33,7 @@ public class Tab extends WebMarkupContainer implements ISecureEnableInstance, IS
     
     private final String label;
     private final IModel labelModel;
+    private boolean loaded = false;
 
     public Tab(String id, IModel label) {
         super(id);
@@ -57,6 +58,17 @@ public class Tab extends WebMarkupContainer implements ISecureEnableInstance, IS
         return (tabs.getSelected().equals(this));
     }
 
+    @Override
+    protected void onConfigure() {
+        super.onConfigure();
+        // lazy tabs only render a placeholder until they are first loaded
+        boolean rendered = ((Tabs) getParent()).isContentRendered(this);
+        setVisibilityAllowed(rendered);
+        if (rendered) {
+            loaded = true;
+        }
+    }
+
     @Override
     protected void onComponentTag(ComponentTag tag) {
         tag.put("class", isSelected() ? "tabpage_selected" : "tabpage");
@@ -67,6 +79,17 @@ public class Tab extends WebMarkupContainer implements ISecureEnableInstance, IS
         return label == null ? (String)labelModel.getObject() : label;
     }
 
+    /**
+     * True if the content of this tab has been fetched into the page in lazy mode.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    void setLoaded(boolean loaded) {
+        this.loaded = loaded;
+    }
+
     public IPrivilege getRenderPrivilege() {
         return IPrivilege.NULL;
     }
@@ -23,11 +23,19 @@ import java.util.List;
 
 import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AbstractDefaultAjaxBehavior;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.attributes.CallbackParameter;
 import org.apache.wicket.behavior.Behavior;
+import org.apache.wicket.core.util.string.JavaScriptUtils;
+import org.apache.wicket.markup.ComponentTag;
+import org.apache.wicket.markup.MarkupStream;
 import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.head.OnDomReadyHeaderItem;
 import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.request.IRequestParameters;
+import org.apache.wicket.request.Response;
 import org.apache.wicket.request.resource.ResourceReference;
 
 import com.visural.common.StringUtil;
@@ -36,6 +44,20 @@ import com.visural.wicket.security.ISecureEnableInstance;
 import com.visural.wicket.security.ISecureRenderInstance;
 
 /**
+ * A set of {@link Tab}s, where all tab content is rendered into the page and
+ * the user switches between tabs client side.
+ *
+ * The tab strip is rendered server side, at the start of the component's body,
+ * followed by the tab pages in a `tab_contents` container.
+ *
+ * In lazy mode (`setLazy(true)`), only the selected tab's content is rendered
+ * initially - other tabs render an empty placeholder and their content is fetched
+ * by Ajax the first time they are selected (or, with `setPrefetchOnHover(true)`,
+ * when the mouse first moves over the tab link).
+ *
+ * Tab selection is normally client side only. `setSyncSelection(true)` notifies
+ * the server of each selection via a lightweight Ajax request, so the selected
+ * tab survives re-rendering (e.g. on pages which refresh via Ajax).
  *
  * @author Visural
  */
@@ -44,56 +66,83 @@ public class Tabs extends WebMarkupContainer implements ISecureEnableInstance, I
     
     private final List<Tab> tabs = new ArrayList<Tab>();
     private Comparator<Tab> comparator = null;
+    private boolean lazy = false;
+    private boolean prefetchOnHover = false;
+    private boolean syncSelection = false;
+    private boolean sortRequired = false;
+    private TabsAjaxBehavior ajaxBehavior = null;
 
     public Tabs(String id) {
         super(id);
         setOutputMarkupId(true);
-        add(AttributeModifier.replace("class", "tab_contents"));
+        add(AttributeModifier.replace("class", "tabs"));
         add(new Behavior() {
 
             @Override
             public void renderHead(Component component, IHeaderResponse response) {
-            	response.render(OnDomReadyHeaderItem.forScript("if (jQuery('#"+Tabs.this.getMarkupId()+"_tabs').length == 0) { " +
-                        "var tempTabs = jQuery('#"+Tabs.this.getMarkupId()+"').clone();" +
-                        "jQuery('"+tabsContainer().replace("'", "\\'")+"').insertAfter(jQuery('#"+Tabs.this.getMarkupId()+"'));" +
-                        "jQuery('#"+Tabs.this.getMarkupId()+"').remove();" +
-                        "tempTabs.insertAfter(jQuery('#"+Tabs.this.getMarkupId()+"_tabs'));" +
-                        "} else { " +
-                        "var selId = jQuery('#"+Tabs.this.getMarkupId()+"_tabs > .tab_selected').attr('id');" +
-                        "jQuery('#"+Tabs.this.getMarkupId()+"_tabs').remove();" +
-                        "jQuery('<div id=\""+getMarkupId()+"_tabs\">"+tabLinks().replace("'", "\\'")+"</div>').prependTo(jQuery('#"+getMarkupId()+"_border')); " +
-                        "jQuery('#'+selId).trigger('click');" +
-                        "}"));
+                // after an Ajax re-render, restore the tab the user last selected client side
+                String selected = getSelectedVar();
+                response.render(OnDomReadyHeaderItem.forScript("if (" + selected + ") { jQuery('#' + "
+                        + selected + " + '_link').trigger('click'); }"));
             }
+        });
+    }
 
-            private String tabsContainer() {
-                StringBuilder pre = new StringBuilder("<div id=\""+getMarkupId()+"_border\" class=\"tabs\">");
-                pre.append("<div id=\"").append(getMarkupId()).append("_tabs\">");
-                pre.append(tabLinks());
-                pre.append("</div></div>");
-                return pre.toString();
-            }
+    /**
+     * Renders the tab strip, followed by the tab pages.
+     */
+    @Override
+    public void onComponentTagBody(MarkupStream markupStream, ComponentTag openTag) {
+        Response response = getResponse();
+        response.write("<div id=\"" + getMarkupId() + "_tabs\">");
+        response.write(tabLinks());
+        response.write("</div><div id=\"" + getMarkupId() + "_contents\" class=\"tab_contents\">");
+        super.onComponentTagBody(markupStream, openTag);
+        response.write("</div>");
+    }
+
+    /**
+     * Replaces only the tab strip (i.e. the tab links, not the tab contents) using
+     * the given Ajax context - e.g. after changing a tab's label or visibility.
+     * @param target
+     */
+    public void updateTabStrip(AjaxRequestTarget target) {
+        target.appendJavaScript("jQuery('#" + getMarkupId() + "_tabs').html('"
+                + JavaScriptUtils.escapeQuotes(tabLinks()) + "'); jQuery('#"
+                + getMarkupId() + "_tabs > .tab_selected').trigger('click');");
+    }
 
-            private String tabLinks() {
-                StringBuilder links = new StringBuilder();
-                for (Tab t : tabs) {
-                    if (t.isVisibleInHierarchy()) {
-                        String clazz = getSelected().equals(t) ? "tab_selected" : "tab";
-                        links.append("<a id=\"")
-                            .append(t.getMarkupId())
-                            .append("_link\" class=\"")
-                            .append(clazz)
-                            .append("\" href=\"javascript:void(0);\" onclick=\"")
-                            .append(StringUtil.htmlAttributeEscape(getSelectTabString(t.getMarkupId()).toString()))
-                            .append("\">")
-                            .append(StringUtil.htmlEscape(t.getLabel()))
-                            .append("</a>");
-                    }
+    private String tabLinks() {
+        StringBuilder links = new StringBuilder();
+        for (Tab t : tabs) {
+            // not isVisibleInHierarchy(), as unloaded lazy tabs have their visibility disallowed
+            if (t.isVisible() && t.isRenderAllowed()) {
+                String clazz = getSelected().equals(t) ? "tab_selected" : "tab";
+                links.append("<a id=\"")
+                    .append(t.getMarkupId())
+                    .append("_link\" class=\"")
+                    .append(clazz)
+                    .append("\" href=\"javascript:void(0);\" onclick=\"")
+                    .append(StringUtil.htmlAttributeEscape(getTabCallbackString(t, true) + getSelectTabString(t.getMarkupId())))
+                    .append("\"");
+                if (isPrefetchOnHover() && !isContentRendered(t)) {
+                    links.append(" onmouseover=\"")
+                        .append(StringUtil.htmlAttributeEscape(getTabCallbackString(t, false)))
+                        .append("\"");
                 }
-                return links.toString();
-            }           
+                links.append(">")
+                    .append(StringUtil.htmlEscape(t.getLabel()))
+                    .append("</a>");
+            }
+        }
+        return links.toString();
+    }
 
-        });
+    /**
+     * The client side variable holding the markup id of the tab last selected.
+     */
+    private String getSelectedVar() {
+        return "window.VISURAL" + getMarkupId() + "Selected";
     }
 
     @Override
@@ -119,17 +168,65 @@ public class Tabs extends WebMarkupContainer implements ISecureEnableInstance, I
         StringBuilder sb = new StringBuilder();
         sb.append("jQuery('#")
           .append(getMarkupId())
-          .append(" > .tabpage_selected').attr('class', 'tabpage'); jQuery('#")
+          .append("_contents > .tabpage_selected').attr('class', 'tabpage'); jQuery('#")
           .append(tabId)
           .append("').attr('class','tabpage_selected');")
           .append("jQuery('#")
           .append(getMarkupId())
           .append("_tabs > .tab_selected').attr('class', 'tab'); jQuery('#")
           .append(tabId)
-          .append("_link').attr('class','tab_selected');");;
+          .append("_link').attr('class','tab_selected');")
+          .append(getSelectedVar())
+          .append(" = '")
+          .append(tabId)
+          .append("';");
         return sb;
     }
 
+    /**
+     * Returns the JavaScript which notifies the server when a tab is clicked
+     * (`select`) or hovered over - either to fetch the content of a lazy tab which
+     * has not yet been loaded, or to sync the selected tab if `isSyncSelection()`.
+     * Returns an empty string if there is nothing to do.
+     */
+    private String getTabCallbackString(Tab t, boolean select) {
+        String sync = select && isSyncSelection()
+                ? "if (" + getSelectedVar() + " != '" + t.getMarkupId() + "') { "
+                    + getTabCallback(t, true, false) + " }"
+                : "";
+        if (isLazy() && !isContentRendered(t)) {
+            // the strip is not re-rendered once the tab loads, so later clicks
+            // must still sync the selection
+            String flag = "window.VISURAL" + t.getMarkupId() + "Loaded";
+            return "if (!" + flag + ") { " + flag + " = true; "
+                    + getTabCallback(t, select, true) + " }"
+                    + (sync.length() == 0 ? "" : " else " + sync);
+        }
+        return sync;
+    }
+
+    private CharSequence getTabCallback(Tab t, boolean select, boolean load) {
+        return getAjaxBehavior().getCallbackFunctionBody(
+                CallbackParameter.resolved("tab", "'" + t.getId() + "'"),
+                CallbackParameter.resolved("select", Boolean.toString(select)),
+                CallbackParameter.resolved("load", Boolean.toString(load)));
+    }
+
+    private TabsAjaxBehavior getAjaxBehavior() {
+        if (ajaxBehavior == null) {
+            add(ajaxBehavior = new TabsAjaxBehavior());
+        }
+        return ajaxBehavior;
+    }
+
+    /**
+     * True if the tab's content is rendered into the page - i.e. the tabs are
+     * not lazy, or the tab is selected or has been loaded already.
+     */
+    boolean isContentRendered(Tab t) {
+        return !isLazy() || t.isLoaded() || getSelected().equals(t);
+    }
+
     public Tabs(String id, Tab... tabs) {
         this(id);
         for (Tab t : tabs) {
@@ -140,34 +237,131 @@ public class Tabs extends WebMarkupContainer implements ISecureEnableInstance, I
     public Tab add(Tab t) {
         super.add(t);
         tabs.add(t);
+        sortRequired = true;
+        if (isLazy()) {
+            t.setOutputMarkupPlaceholderTag(true);
+        }
         return t;
     }
 
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Set whether tab content should only be rendered when the tab is first
+     * selected (default: false).
+     * @param lazy
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+        if (lazy) {
+            getAjaxBehavior();
+            for (Tab t : tabs) {
+                t.setOutputMarkupPlaceholderTag(true);
+            }
+        }
+    }
+
+    public boolean isSyncSelection() {
+        return syncSelection;
+    }
+
+    /**
+     * Set whether the tab selected client side should be sent to the server
+     * (with a lightweight Ajax request that does not repaint anything), so that
+     * the selection is retained when the tabs are re-rendered (default: false).
+     * @param syncSelection
+     */
+    public void setSyncSelection(boolean syncSelection) {
+        this.syncSelection = syncSelection;
+        if (syncSelection) {
+            getAjaxBehavior();
+        }
+    }
+
+    public boolean isPrefetchOnHover() {
+        return prefetchOnHover;
+    }
+
+    /**
+     * In lazy mode, set whether tab content should be fetched as soon as the
+     * mouse moves over the tab link, rather than when it is clicked (default: false).
+     * @param prefetchOnHover
+     */
+    public void setPrefetchOnHover(boolean prefetchOnHover) {
+        this.prefetchOnHover = prefetchOnHover;
+    }
+
     public Comparator<Tab> getComparator() {
         return comparator;
     }
 
     public void setComparator(Comparator<Tab> comparator) {
         this.comparator = comparator;
+        sortRequired = true;
     }
 
     @Override
     protected void onBeforeRender() {
+        // sort before the tabs are configured, as they check which is selected
+        sortTabs();
         super.onBeforeRender();
-        if (comparator != null) {
+    }
+
+    private void sortTabs() {
+        // only sort when tabs or the comparator have changed
+        if (sortRequired && comparator != null) {
             Collections.sort(tabs, comparator);
         }
+        sortRequired = false;
     }
 
     private int selectedIndex = 0;
+    private Tab selected = null;
 
     public final Tab getSelected() {
-        // TODO - this will probably change
-        return tabs.get(selectedIndex);
+        if (selected == null) {
+            sortTabs();
+            selected = tabs.get(selectedIndex);
+        }
+        return selected;
     }
 
+    /**
+     * Selects the tab at the given index, in display order (i.e. after sorting
+     * by the comparator, if any).
+     * @param idx
+     */
     public void setSelectedTabIndex(int idx) {
         selectedIndex = idx;
+        selected = null;
+    }
+
+    /**
+     * Handles tab callbacks - rendering the content of a lazy tab on request,
+     * and/or recording the tab selected client side.
+     */
+    private class TabsAjaxBehavior extends AbstractDefaultAjaxBehavior {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void respond(AjaxRequestTarget target) {
+            IRequestParameters params = getRequest().getRequestParameters();
+            Component c = get(params.getParameterValue("tab").toString(""));
+            if (c instanceof Tab && tabs.contains((Tab) c)) {
+                Tab t = (Tab) c;
+                if (params.getParameterValue("select").toBoolean(false)) {
+                    selected = t;
+                }
+                if (params.getParameterValue("load").toBoolean(false)) {
+                    t.setLoaded(true);
+                    target.add(t);
+                    // the user may have moved on to another tab while this one loaded
+                    target.appendJavaScript("jQuery('#" + getMarkupId() + "_tabs > .tab_selected').trigger('click');");
+                }
+            }
+        }
     }
 
     protected ResourceReference getCSS() {
@@ -16,8 +16,10 @@
  */
 package com.visural.wicket.model;
 
-import com.visural.common.DateUtil;
+import com.visural.common.apacherepack.FastDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import org.apache.wicket.Session;
 import org.apache.wicket.extensions.markup.html.repeater.data.table.PropertyColumn;
 import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
@@ -25,6 +27,9 @@ import org.apache.wicket.model.IModel;
 /**
  * A property column extension that allows you to override the format for a Date property.
  *
+ * The property is evaluated once per cell render, and formatted with a thread-safe
+ * formatter shared per format and locale.
+ *
  * @version $Id: DatePropertyColumn.java 256 2011-02-05 12:06:02Z tibes80@gmail.com $
  * @author Richard Nichols
  */
@@ -49,14 +54,38 @@ public class DatePropertyColumn extends PropertyColumn {
     @Override
     protected IModel createLabelModel(final IModel itemModel) {
         final IModel superModel = super.createLabelModel(itemModel);
-        if (superModel != null && superModel.getObject() != null && Date.class.isAssignableFrom(superModel.getObject().getClass())) {
-            return new AbstractReadOnlyModel() {
-                public Object getObject() {
-                    return DateUtil.formatDate((Date)superModel.getObject(), dateFormat);
-                }
-            };
-        } else {
-            return superModel;
+        if (superModel == null) {
+            return null;
         }
+        return new AbstractReadOnlyModel() {
+            public Object getObject() {
+                Object value = superModel.getObject();
+                if (value instanceof Date) {
+                    return formatDate((Date) value);
+                }
+                return value;
+            }
+
+            @Override
+            public void detach() {
+                superModel.detach();
+            }
+        };
+    }
+
+    /**
+     * Formats a cell value using the column's date format.
+     * @param date
+     * @return
+     */
+    protected String formatDate(Date date) {
+        return FastDateFormat.getInstance(dateFormat, getLocale()).format(date);
+    }
+
+    /**
+     * @return the session locale, or the JVM default outside of a request
+     */
+    protected Locale getLocale() {
+        return Session.exists() ? Session.get().getLocale() : Locale.getDefault();
     }
 }
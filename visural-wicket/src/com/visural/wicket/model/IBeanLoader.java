@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2009 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.model;
+
+import java.io.Serializable;
+
+/**
+ * Maps java beans to and from a compact, serializable key, for use with
+ * {@link KeyedBeanModel}.
+ *
+ * Implementations are serialized along with every model that uses them, so
+ * they should be small and stateless - e.g. reference a DAO or service via a
+ * static lookup rather than holding it as a field. Implementations are free to
+ * keep their own shared (application-wide) cache of loaded beans.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public interface IBeanLoader<K extends Serializable, T> extends Serializable {
+
+    /**
+     * @param bean
+     * @return the key which identifies the bean, which will be passed back to
+     *         `load(...)` to reload it
+     */
+    K getKey(T bean);
+
+    /**
+     * @param key
+     * @return the bean for the given key
+     */
+    T load(K key);
+}
@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2009 Richard Nichols.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.model;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.request.cycle.RequestCycle;
+
+/**
+ * A truly detachable alternative to {@link RetainedBeanModel}. Only the bean's
+ * key and its {@link IBeanLoader} are retained between requests, so the bean
+ * graph is not serialized into each page version.
+ *
+ * Models are created with `ofBean(...)`, for a bean which has already been
+ * loaded, or `ofKey(...)`, to load the bean on first use.
+ *
+ * Within a request, beans are cached by loader and key in the `RequestCycle`,
+ * so several models (or components) sharing a loader and referring to the same
+ * bean cause only a single load. Loaders are compared with `equals(...)` - by
+ * default only models sharing the same loader instance (e.g. those created by
+ * one data provider) share loaded beans.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public class KeyedBeanModel<K extends Serializable, T> extends LoadableDetachableModel<T> {
+
+    private static final long serialVersionUID = 1L;
+    private static final MetaDataKey<HashMap<CacheKey, Object>> REQUEST_CACHE = new MetaDataKey<HashMap<CacheKey, Object>>() {
+        private static final long serialVersionUID = 1L;
+    };
+    private final K key;
+    private final IBeanLoader<K, T> loader;
+
+    protected KeyedBeanModel(IBeanLoader<K, T> loader, K key) {
+        this.loader = loader;
+        this.key = key;
+    }
+
+    /**
+     * Creates a model for a bean which has already been loaded. The bean is
+     * used for the current request, and is reloaded by key after detach.
+     * @param bean
+     * @param loader
+     * @return
+     */
+    public static <K extends Serializable, T> KeyedBeanModel<K, T> ofBean(T bean, IBeanLoader<K, T> loader) {
+        KeyedBeanModel<K, T> model = new KeyedBeanModel<K, T>(loader, loader.getKey(bean));
+        model.setObject(bean);
+        model.cache(bean);
+        return model;
+    }
+
+    /**
+     * Creates a model which loads the bean with the given key on first use.
+     * @param key
+     * @param loader
+     * @return
+     */
+    public static <K extends Serializable, T> KeyedBeanModel<K, T> ofKey(K key, IBeanLoader<K, T> loader) {
+        return new KeyedBeanModel<K, T>(loader, key);
+    }
+
+    public K getKey() {
+        return key;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T load() {
+        Map<CacheKey, Object> cache = getRequestCache();
+        if (cache != null) {
+            CacheKey ck = new CacheKey(loader, key);
+            if (cache.containsKey(ck)) {
+                return (T) cache.get(ck);
+            }
+            T bean = loader.load(key);
+            cache.put(ck, bean);
+            return bean;
+        }
+        return loader.load(key);
+    }
+
+    private void cache(T bean) {
+        Map<CacheKey, Object> cache = getRequestCache();
+        if (cache != null) {
+            cache.put(new CacheKey(loader, key), bean);
+        }
+    }
+
+    private static Map<CacheKey, Object> getRequestCache() {
+        RequestCycle rc = RequestCycle.get();
+        if (rc == null) {
+            return null;
+        }
+        HashMap<CacheKey, Object> cache = rc.getMetaData(REQUEST_CACHE);
+        if (cache == null) {
+            cache = new HashMap<CacheKey, Object>();
+            rc.setMetaData(REQUEST_CACHE, cache);
+        }
+        return cache;
+    }
+
+    private static class CacheKey implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final Object loader;
+        private final Object key;
+
+        public CacheKey(Object loader, Object key) {
+            this.loader = loader;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return loader.equals(other.loader)
+                    && (key == null ? other.key == null : key.equals(other.key));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * loader.hashCode() + (key == null ? 0 : key.hashCode());
+        }
+    }
+}
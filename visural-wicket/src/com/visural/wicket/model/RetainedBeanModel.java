@@ -19,10 +19,11 @@ package com.visural.wicket.model;
 import org.apache.wicket.model.LoadableDetachableModel;
 
 /**
- * TODO: unfinished code
- *
  * An implementation of `LoadableDetachableModel` designed to store a java bean in-session, i.e. not detachable.
  *
+ * Note that the whole bean graph is serialized with every page version. Where
+ * beans can be reloaded by key, consider {@link KeyedBeanModel} instead.
+ *
  * @version $Id: RetainedBeanModel.java 256 2011-02-05 12:06:02Z tibes80@gmail.com $
  * @author Richard Nichols
  */
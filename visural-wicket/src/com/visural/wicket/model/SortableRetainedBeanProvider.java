@@ -16,38 +16,257 @@
  */
 package com.visural.wicket.model;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.apache.wicket.core.util.lang.PropertyResolver;
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
 import org.apache.wicket.extensions.markup.html.repeater.util.SortableDataProvider;
 import org.apache.wicket.model.IModel;
 
 /**
- * TODO: unfinished code
- *
  * An implementation of `SortableDataProvider` which utilites the {@link RetainedBeanModel}
  * to provide a list of java beans, which is sortable by property.
  *
+ * The sort order for each `SortParam` is computed once, as a permutation of
+ * indexes into the bean list, and cached. Paging through a sorted `DataTable`
+ * then only walks a slice of the cached permutation, rather than resorting
+ * the whole list for every page. The cache is transient and is discarded when
+ * the beans are replaced via `setBeans(...)` or when `invalidate()` is called.
+ * If you modify the bean list in place, you must call `invalidate()`.
+ *
+ * By default the sort property is treated as a Wicket property expression
+ * (via `toString()`) and the values compared as `Comparable`s, nulls first.
+ * Override `getSortValue(...)` and/or `compareSortValues(...)` to customise.
+ *
+ * By default the bean list is retained in the page, and each row is wrapped in
+ * a {@link RetainedBeanModel}. Set an {@link IBeanLoader} to retain only the
+ * beans' keys instead - the beans are reloaded by key on first use after each
+ * detach, and rows are wrapped in {@link KeyedBeanModel}s, so only keys are
+ * serialized with each page version. In this mode `getBeans()` returns the
+ * currently loaded beans, so changes to the list must be applied with
+ * `setBeans(...)`.
+ *
  * @version $Id: SortableRetainedBeanProvider.java 256 2011-02-05 12:06:02Z tibes80@gmail.com $
  * @author Richard Nichols
  */
 public class SortableRetainedBeanProvider<T,S> extends SortableDataProvider<T,S> {
 
-    // TODO: implement.
-    public SortableRetainedBeanProvider() {
+    private static final long serialVersionUID = 1L;
+    // with a loader, only the keys are retained and the beans are reloaded
+    private List<T> beans;
+    private IBeanLoader<?, T> beanLoader;
+    private List<Serializable> keys;
+    private transient List<T> loadedBeans;
+    private transient Map<SortParam<S>, int[]> orderCache;
+
+    public SortableRetainedBeanProvider(List<T> beans) {
+        setBeans(beans);
+    }
+
+    public List<T> getBeans() {
+        if (beanLoader == null) {
+            return beans;
+        }
+        if (loadedBeans == null) {
+            loadedBeans = loadBeans(keys, beanLoader);
+        }
+        return loadedBeans;
+    }
+
+    public void setBeans(List<T> beans) {
+        if (beans == null) {
+            throw new IllegalArgumentException("beans may not be null");
+        }
+        retain(beans);
+        invalidate();
+    }
+
+    public IBeanLoader<?, T> getBeanLoader() {
+        return beanLoader;
+    }
+
+    /**
+     * Sets the loader used to create row models. If null (the default) rows
+     * are wrapped in {@link RetainedBeanModel}s.
+     * @param beanLoader
+     */
+    public void setBeanLoader(IBeanLoader<?, T> beanLoader) {
+        List<T> current = getBeans();
+        this.beanLoader = beanLoader;
+        retain(current);
+    }
+
+    private void retain(List<T> beans) {
+        if (beanLoader == null) {
+            this.beans = beans;
+            keys = null;
+            loadedBeans = null;
+        } else {
+            this.beans = null;
+            keys = keysOf(beans, beanLoader);
+            loadedBeans = beans;
+        }
+    }
+
+    /**
+     * Discards any cached sort orders. Must be called if the bean list is
+     * modified in place.
+     */
+    public void invalidate() {
+        orderCache = null;
+    }
+
+    @Override
+    public void detach() {
+        super.detach();
+        loadedBeans = null;
     }
 
     @Override
     public Iterator<? extends T> iterator(long first, long count) {
-        throw new UnsupportedOperationException("Not supported yet.");
+        List<T> beans = getBeans();
+        int size = beans.size();
+        int from = (int) Math.min(Math.max(first, 0), size);
+        int to = (int) Math.min(from + Math.max(count, 0), size);
+        SortParam<S> sort = getSort();
+        if (sort == null || sort.getProperty() == null) {
+            return beans.subList(from, to).iterator();
+        }
+        return new PermutationIterator(getOrder(sort), from, to);
     }
 
     @Override
     public long size() {
-        throw new UnsupportedOperationException("Not supported yet.");
+        return beanLoader == null ? beans.size() : keys.size();
     }
 
     @Override
-    public IModel<T> model(T arg0) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    public IModel<T> model(T bean) {
+        if (beanLoader != null) {
+            return keyedModel(bean, beanLoader);
+        }
+        return new RetainedBeanModel<T>(bean);
     }
 
+    private static <K extends Serializable, T> IModel<T> keyedModel(T bean, IBeanLoader<K, T> loader) {
+        return KeyedBeanModel.ofBean(bean, loader);
+    }
+
+    private static <K extends Serializable, T> List<Serializable> keysOf(List<T> beans, IBeanLoader<K, T> loader) {
+        List<Serializable> result = new ArrayList<Serializable>(beans.size());
+        for (T bean : beans) {
+            result.add(loader.getKey(bean));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K extends Serializable, T> List<T> loadBeans(List<Serializable> keys, IBeanLoader<K, T> loader) {
+        List<T> result = new ArrayList<T>(keys.size());
+        for (Serializable key : keys) {
+            result.add(loader.load((K) key));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of the given sort property for a bean. Called once per
+     * bean when a sort order is first computed.
+     * @param bean
+     * @param property
+     * @return
+     */
+    protected Object getSortValue(T bean, S property) {
+        return PropertyResolver.getValue(property.toString(), bean);
+    }
+
+    /**
+     * Compares two sort values, in ascending order.
+     * @param a
+     * @param b
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    protected int compareSortValues(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        } else if (a == null) {
+            return -1;
+        } else if (b == null) {
+            return 1;
+        }
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private int[] getOrder(SortParam<S> sort) {
+        if (orderCache == null) {
+            orderCache = new HashMap<SortParam<S>, int[]>();
+        }
+        int[] order = orderCache.get(sort);
+        if (order == null) {
+            order = computeOrder(sort);
+            orderCache.put(sort, order);
+        }
+        return order;
+    }
+
+    private int[] computeOrder(SortParam<S> sort) {
+        List<T> beans = getBeans();
+        int size = beans.size();
+        final Object[] values = new Object[size];
+        Integer[] indexes = new Integer[size];
+        int n = 0;
+        for (T bean : beans) {
+            values[n] = getSortValue(bean, sort.getProperty());
+            indexes[n] = n;
+            n++;
+        }
+        final boolean ascending = sort.isAscending();
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                int result = compareSortValues(values[a], values[b]);
+                return ascending ? result : -result;
+            }
+        });
+        int[] order = new int[size];
+        for (n = 0; n < size; n++) {
+            order[n] = indexes[n];
+        }
+        return order;
+    }
+
+    private class PermutationIterator implements Iterator<T> {
+
+        private final int[] order;
+        private final int to;
+        private int next;
+
+        public PermutationIterator(int[] order, int from, int to) {
+            this.order = order;
+            this.next = from;
+            this.to = to;
+        }
+
+        public boolean hasNext() {
+            return next < to;
+        }
+
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return getBeans().get(order[next++]);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported.");
+        }
+    }
 }
@@ -0,0 +1,55 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.util;
+
+import com.visural.common.StringUtil;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Derives short identifiers (e.g. CSS class names, or the ids of shared client
+ * side templates and option sets) from generated content.
+ *
+ * The identifier is a SHA-1 digest of the content, so distinct content can be
+ * relied upon to have distinct identifiers - unlike `hashCode()`, where
+ * collisions are trivial to produce, and would cause one component to pick up
+ * another's client side state.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public final class ContentDigest {
+
+    private ContentDigest() {
+    }
+
+    /**
+     * @param content
+     * @return the hex encoded SHA-1 digest of the UTF-8 encoded content
+     */
+    public static String sha1(CharSequence content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            return StringUtil.byteArrayToHexString(md.digest(content.toString().getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.util;
+
+import java.io.Serializable;
+
+/**
+ * Source of the current time for components and validators which compare
+ * against "now". Supply a fixed implementation in unit tests to make
+ * time-dependent behaviour deterministic.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public interface IClock extends Serializable {
+
+    /**
+     * @return the current time, in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.util;
+
+/**
+ * Helpers for writing Java values into generated JavaScript.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public final class JavaScriptStrings {
+
+    private JavaScriptStrings() {
+    }
+
+    /**
+     * Escapes the given text for use within a single quoted JavaScript string
+     * literal. The `/` of any `</` is also escaped, so the literal can not close
+     * the script element it is rendered in.
+     * @param s
+     * @return the escaped text, without the enclosing quotes
+     */
+    public static String escape(String s) {
+        StringBuilder result = new StringBuilder(s.length() + 16);
+        for (int n = 0; n < s.length(); n++) {
+            char c = s.charAt(n);
+            switch (c) {
+                case '\\':
+                case '\'':
+                    result.append('\\').append(c);
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '/':
+                    // avoid closing the script element
+                    if (n > 0 && s.charAt(n - 1) == '<') {
+                        result.append('\\');
+                    }
+                    result.append(c);
+                    break;
+                default:
+                    result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2010 Richard Nichols.
+ * 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *  under the License.
+ */
+package com.visural.wicket.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.wicket.Application;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.mapper.parameter.PageParameters;
+import org.apache.wicket.request.resource.ResourceReference;
+
+/**
+ * Resolves URLs for static resources (e.g. indicator images and icons) which
+ * are used by many components on a page.
+ *
+ * The mapped URL of each resource reference is resolved once per application
+ * and then only rendered relative to the current request, rather than being
+ * mapped by `urlFor(...)` for every component on every render. In development
+ * mode the mapped URLs are not cached, so resource changes are always picked up.
+ *
+ * @version $Id$
+ * @author Richard Nichols
+ */
+public final class ResourceUrlCache {
+
+    private static final MetaDataKey<ConcurrentMap<ResourceReference, Url>> URLS = new MetaDataKey<ConcurrentMap<ResourceReference, Url>>() {
+        private static final long serialVersionUID = 1L;
+    };
+
+    private ResourceUrlCache() {
+    }
+
+    /**
+     * Returns the URL of the given resource for the current request.
+     * @param reference
+     * @return
+     */
+    public static CharSequence urlFor(ResourceReference reference) {
+        RequestCycle rc = RequestCycle.get();
+        Application app = Application.get();
+        if (!app.usesDeploymentConfig()) {
+            return rc.urlFor(reference, new PageParameters());
+        }
+        ConcurrentMap<ResourceReference, Url> urls = getUrls(app);
+        Url url = urls.get(reference);
+        if (url == null) {
+            url = rc.mapUrlFor(reference, new PageParameters());
+            urls.putIfAbsent(reference, url);
+        }
+        // rendering may modify the url, so always render a copy
+        String rendered = rc.getUrlRenderer().renderUrl(new Url(url));
+        // as per RequestCycle.urlFor(...), resource urls are only encoded on request
+        if (app.getResourceSettings().isEncodeJSessionId()) {
+            rendered = rc.getOriginalResponse().encodeURL(rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * Discards all cached URLs for the current application.
+     */
+    public static void clear() {
+        getUrls(Application.get()).clear();
+    }
+
+    private static ConcurrentMap<ResourceReference, Url> getUrls(Application app) {
+        ConcurrentMap<ResourceReference, Url> urls = app.getMetaData(URLS);
+        if (urls == null) {
+            synchronized (app) {
+                urls = app.getMetaData(URLS);
+                if (urls == null) {
+                    urls = new ConcurrentHashMap<ResourceReference, Url>();
+                    app.setMetaData(URLS, urls);
+                }
+            }
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.behavior.jsr303;
+
+import com.visural.wicket.util.IClock;
+import java.util.Date;
+import junit.framework.TestCase;
+import org.apache.wicket.validation.ValidationError;
+import org.apache.wicket.validation.Validatable;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class RelativeDateValidatorTest extends TestCase {
+
+    private static final long NOW = 1300000000000L;
+    private static final IClock CLOCK = new FixedClock(NOW);
+
+    public void testPast() {
+        assertTrue(isValid(new PastValidator(null, CLOCK), NOW - 1));
+        assertTrue(isValid(new PastValidator(null, CLOCK), NOW));
+        assertFalse(isValid(new PastValidator(null, CLOCK), NOW + 1));
+    }
+
+    public void testFuture() {
+        assertTrue(isValid(new FutureValidator(null, CLOCK), NOW + 1));
+        assertTrue(isValid(new FutureValidator(null, CLOCK), NOW));
+        assertFalse(isValid(new FutureValidator(null, CLOCK), NOW - 1));
+    }
+
+    public void testErrorUsesFormat() {
+        Validatable<Date> v = new Validatable<Date>(new Date(NOW + 1));
+        new PastValidator("yyyy", CLOCK).validate(v);
+        ValidationError error = (ValidationError) v.getErrors().get(0);
+        assertEquals("DateValidator.past", error.getKeys().get(0));
+        assertEquals("2011", error.getVariables().get("inputdate"));
+    }
+
+    private boolean isValid(RelativeDateValidator validator, long time) {
+        Validatable<Date> v = new Validatable<Date>(new Date(time));
+        validator.validate(v);
+        return v.isValid();
+    }
+
+    private static class FixedClock implements IClock {
+
+        private final long time;
+
+        public FixedClock(long time) {
+            this.time = time;
+        }
+
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+}
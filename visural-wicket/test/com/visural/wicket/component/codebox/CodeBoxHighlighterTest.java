@@ -0,0 +1,123 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.component.codebox;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class CodeBoxHighlighterTest extends TestCase {
+
+    private final CodeBoxHighlighter highlighter = new CodeBoxHighlighter(1024);
+
+    public void testJava() {
+        String html = highlight(CodeBoxLanguage.JAVA, "public class A { // hi\n String s = \"a<b\\\"\"; /* x\ny */ int n = 42; }");
+        assertContains(html, "<span class=\"kwd\">public</span> <span class=\"kwd\">class</span> <span class=\"typ\">A</span>");
+        assertContains(html, "<span class=\"com\">// hi</span>\n");
+        assertContains(html, "<span class=\"str\">\"a&lt;b\\\"\"</span>");
+        // block comments are closed and reopened around line breaks
+        assertContains(html, "<span class=\"com\">/* x</span>\n<span class=\"com\">y */</span>");
+        assertContains(html, "<span class=\"lit\">42</span>");
+    }
+
+    public void testPython() {
+        String html = highlight(CodeBoxLanguage.PYTHON, "def f(x): # c\n  return 'a&b' + \"\"\"doc\"\"\"");
+        assertContains(html, "<span class=\"kwd\">def</span> f");
+        assertContains(html, "<span class=\"com\"># c</span>");
+        assertContains(html, "<span class=\"str\">'a&amp;b'</span>");
+        assertContains(html, "<span class=\"str\">\"\"\"doc\"\"\"</span>");
+    }
+
+    public void testSql() {
+        String html = highlight(CodeBoxLanguage.SQL, "SELECT name FROM t -- c\nwhere x = 'y'");
+        assertContains(html, "<span class=\"kwd\">SELECT</span> name <span class=\"kwd\">FROM</span>");
+        // keywords are case insensitive
+        assertContains(html, "<span class=\"kwd\">where</span>");
+        assertContains(html, "<span class=\"com\">-- c</span>");
+        assertContains(html, "<span class=\"str\">'y'</span>");
+    }
+
+    public void testLisp() {
+        String html = highlight(CodeBoxLanguage.LISP, "(defun f (x) ; c\n  \"s\")");
+        assertContains(html, "<span class=\"kwd\">defun</span>");
+        assertContains(html, "<span class=\"com\">; c</span>");
+        assertContains(html, "<span class=\"str\">\"s\"</span>");
+    }
+
+    public void testVisualBasic() {
+        String html = highlight(CodeBoxLanguage.VISUAL_BASIC, "Dim x As String ' c\nREM r");
+        assertContains(html, "<span class=\"kwd\">Dim</span> x <span class=\"kwd\">As</span>");
+        assertContains(html, "<span class=\"com\">' c</span>");
+        assertContains(html, "<span class=\"com\">REM r</span>");
+    }
+
+    public void testHaskell() {
+        String html = highlight(CodeBoxLanguage.HASKELL, "module M where {- c -} x = \"s\" -- l");
+        assertContains(html, "<span class=\"kwd\">module</span>");
+        assertContains(html, "<span class=\"com\">{- c -}</span>");
+        assertContains(html, "<span class=\"str\">\"s\"</span>");
+        assertContains(html, "<span class=\"com\">-- l</span>");
+    }
+
+    public void testMarkup() {
+        String html = highlight(CodeBoxLanguage.XML, "<!-- c --><a href=\"x&y\" b='1'>t&amp;<br/></a><?xml v?>");
+        assertContains(html, "<span class=\"com\">&lt;!-- c --&gt;</span>");
+        assertContains(html, "<span class=\"tag\">&lt;a</span> <span class=\"atn\">href</span><span class=\"pun\">=</span><span class=\"atv\">\"x&amp;y\"</span>");
+        assertContains(html, "<span class=\"atv\">'1'</span>");
+        assertContains(html, "t&amp;amp;");
+        assertContains(html, "<span class=\"tag\">&lt;br</span><span class=\"tag\">/&gt;</span>");
+        assertContains(html, "<span class=\"dec\">&lt;?xml v?&gt;</span>");
+    }
+
+    public void testDefaultSyntaxEscapes() {
+        String html = highlighter.highlight("a < b && c > d", null);
+        assertEquals("a <span class=\"pun\">&lt;</span> b <span class=\"pun\">&amp;</span><span class=\"pun\">&amp;</span> c <span class=\"pun\">&gt;</span> d", html);
+    }
+
+    public void testCacheBoundedByCharacters() {
+        String small = "int x;";
+        String cached = highlighter.highlight(small, CodeBoxLanguage.JAVA);
+        assertSame(cached, highlighter.highlight(small, CodeBoxLanguage.JAVA));
+
+        // larger than an eighth of the bound - never cached
+        StringBuilder large = new StringBuilder();
+        for (int n = 0; n < 200; n++) {
+            large.append('x');
+        }
+        String code = large.toString();
+        String first = highlighter.highlight(code, CodeBoxLanguage.JAVA);
+        assertNotSame(first, highlighter.highlight(code, CodeBoxLanguage.JAVA));
+        assertEquals(first, highlighter.highlight(code, CodeBoxLanguage.JAVA));
+
+        // filling the cache evicts the least recently used output
+        for (int n = 0; n < 100; n++) {
+            highlighter.highlight("x" + n + "xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx", CodeBoxLanguage.JAVA);
+        }
+        String again = highlighter.highlight(small, CodeBoxLanguage.JAVA);
+        assertNotSame(cached, again);
+        assertEquals(cached, again);
+    }
+
+    private String highlight(CodeBoxLanguage language, String code) {
+        return highlighter.highlight(code, language);
+    }
+
+    private static void assertContains(String html, String expected) {
+        assertTrue("expected " + expected + " in " + html, html.contains(expected));
+    }
+}
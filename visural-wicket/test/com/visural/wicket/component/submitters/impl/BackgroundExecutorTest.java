@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.IClock;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class BackgroundExecutorTest extends TestCase {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Executor REJECTING = new Executor() {
+        public void execute(Runnable command) {
+            throw new RejectedExecutionException("full");
+        }
+    };
+
+    public void testSubmitFindRemove() {
+        BackgroundExecutor executor = new BackgroundExecutor(SAME_THREAD, new ManualClock());
+        BackgroundTask task = new NoopTask();
+        String token = executor.submit(task);
+        assertTrue(task.isDone());
+        assertNull(task.getFailure());
+        assertSame(task, executor.find(token));
+        executor.remove(token);
+        assertNull(executor.find(token));
+        assertNull(executor.find("unknown"));
+    }
+
+    public void testTokensDistinct() {
+        BackgroundExecutor executor = new BackgroundExecutor(SAME_THREAD, new ManualClock());
+        assertFalse(executor.submit(new NoopTask()).equals(executor.submit(new NoopTask())));
+    }
+
+    public void testRejectedTaskFails() {
+        BackgroundExecutor executor = new BackgroundExecutor(REJECTING, new ManualClock());
+        BackgroundTask task = new NoopTask();
+        String token = executor.submit(task);
+        assertTrue(task.isDone());
+        assertTrue(task.getFailure() instanceof RejectedExecutionException);
+        assertSame(task, executor.find(token));
+    }
+
+    public void testAbandonedTasksDiscarded() {
+        ManualClock clock = new ManualClock();
+        BackgroundExecutor executor = new BackgroundExecutor(SAME_THREAD, clock);
+        String token = executor.submit(new NoopTask());
+
+        // completed, but not yet abandoned
+        executor.submit(new NoopTask());
+        assertNotNull(executor.find(token));
+
+        clock.time += BackgroundExecutor.ABANDON_MILLIS + 1;
+        executor.submit(new NoopTask());
+        assertNull(executor.find(token));
+    }
+
+    public void testUnfinishedTasksKept() {
+        ManualClock clock = new ManualClock();
+        BackgroundExecutor executor = new BackgroundExecutor(new Executor() {
+            public void execute(Runnable command) {
+                // never runs
+            }
+        }, clock);
+        String token = executor.submit(new NoopTask());
+        clock.time += BackgroundExecutor.ABANDON_MILLIS + 1;
+        executor.submit(new NoopTask());
+        assertNotNull(executor.find(token));
+    }
+
+    public void testRemoveCancelsUnfinishedTask() {
+        BackgroundExecutor executor = new BackgroundExecutor(new Executor() {
+            public void execute(Runnable command) {
+                // never runs
+            }
+        }, new ManualClock());
+        BackgroundTask task = new NoopTask();
+        executor.remove(executor.submit(task));
+        assertTrue(task.isCancelled());
+        assertTrue(task.getFailure() instanceof CancellationException);
+    }
+
+    public void testVirtualThreadsWhereAvailable() throws Exception {
+        boolean available;
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            available = true;
+        } catch (NoSuchMethodException e) {
+            available = false;
+        }
+        ExecutorService virtual = BackgroundExecutor.newVirtualThreadExecutor();
+        if (!available) {
+            assertNull(virtual);
+        } else if (virtual != null) {
+            virtual.shutdown();
+        }
+    }
+
+    private static class NoopTask extends BackgroundTask {
+
+        @Override
+        protected void execute() {
+        }
+    }
+
+    private static class ManualClock implements IClock {
+
+        private static final long serialVersionUID = 1L;
+        private long time = System.currentTimeMillis();
+
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+}
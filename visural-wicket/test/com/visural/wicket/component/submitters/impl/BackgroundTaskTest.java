@@ -0,0 +1,136 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class BackgroundTaskTest extends TestCase {
+
+    public void testCompletesNormally() {
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() {
+                setProgress(50);
+            }
+        };
+        assertFalse(task.isDone());
+        assertEquals(0, task.getCompletedAt());
+        task.run();
+        assertTrue(task.isDone());
+        assertTrue(task.getCompletedAt() > 0);
+        assertNull(task.getFailure());
+        assertEquals(50, task.getProgress());
+    }
+
+    public void testProgressClamped() {
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() {
+            }
+        };
+        task.setProgress(150);
+        assertEquals(100, task.getProgress());
+        task.setProgress(-5);
+        assertEquals(0, task.getProgress());
+    }
+
+    public void testExceptionRecorded() {
+        final Exception failure = new Exception("failed");
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() throws Exception {
+                throw failure;
+            }
+        };
+        task.run();
+        assertTrue(task.isDone());
+        assertSame(failure, task.getFailure());
+    }
+
+    public void testErrorRecorded() {
+        final Error failure = new AssertionError("failed");
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() {
+                throw failure;
+            }
+        };
+        task.run();
+        assertTrue(task.isDone());
+        assertSame(failure, task.getFailure());
+    }
+
+    public void testFail() {
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() {
+                throw new AssertionError("should not run");
+            }
+        };
+        RuntimeException reason = new RuntimeException("rejected");
+        task.fail(reason);
+        assertTrue(task.isDone());
+        assertSame(reason, task.getFailure());
+    }
+
+    public void testCancelBeforeRun() {
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() {
+                throw new AssertionError("should not run");
+            }
+        };
+        TimeoutException reason = new TimeoutException();
+        task.cancel(reason);
+        assertTrue(task.isCancelled());
+        assertTrue(task.isDone());
+        task.run();
+        assertSame(reason, task.getFailure());
+    }
+
+    public void testCancelInterruptsRunningTask() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        BackgroundTask task = new BackgroundTask() {
+            @Override
+            protected void execute() throws Exception {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            }
+        };
+        Thread thread = new Thread(task);
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        TimeoutException reason = new TimeoutException();
+        task.cancel(reason);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        thread.join(10000);
+        assertTrue(task.isDone());
+        assertSame(reason, task.getFailure());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.component.submitters.impl;
+
+import com.visural.wicket.util.IClock;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class SubmitGuardTest extends TestCase {
+
+    public void testNoWindowAlwaysAccepts() {
+        ManualClock clock = new ManualClock();
+        SubmitGuard guard = new SubmitGuard(clock);
+        assertTrue(guard.accept());
+        assertTrue(guard.accept());
+        clock.time += 1;
+        assertTrue(guard.accept());
+    }
+
+    public void testDuplicateInsideWindowDropped() {
+        ManualClock clock = new ManualClock();
+        SubmitGuard guard = new SubmitGuard(clock);
+        guard.setWindowMillis(500);
+        assertTrue(guard.accept());
+        assertFalse(guard.accept());
+        clock.time += 499;
+        assertFalse(guard.accept());
+    }
+
+    public void testAcceptedAtWindowBoundary() {
+        ManualClock clock = new ManualClock();
+        SubmitGuard guard = new SubmitGuard(clock);
+        guard.setWindowMillis(500);
+        assertTrue(guard.accept());
+        clock.time += 500;
+        assertTrue(guard.accept());
+        // the window restarts from the last accepted request
+        clock.time += 499;
+        assertFalse(guard.accept());
+        clock.time += 1000;
+        assertTrue(guard.accept());
+    }
+
+    private static class ManualClock implements IClock {
+
+        private static final long serialVersionUID = 1L;
+        private long time = 1000000L;
+
+        public long currentTimeMillis() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.component.tabs;
+
+import java.util.Comparator;
+import junit.framework.TestCase;
+import org.apache.wicket.Application;
+import org.apache.wicket.IPageManagerProvider;
+import org.apache.wicket.IPageRendererProvider;
+import org.apache.wicket.IRequestCycleProvider;
+import org.apache.wicket.Page;
+import org.apache.wicket.RuntimeConfigurationType;
+import org.apache.wicket.Session;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.core.request.ClientInfo;
+import org.apache.wicket.core.request.handler.RenderPageRequestHandler;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.page.IPageManager;
+import org.apache.wicket.page.IPageManagerContext;
+import org.apache.wicket.request.Request;
+import org.apache.wicket.request.Response;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestCycleContext;
+import org.apache.wicket.request.handler.render.PageRenderer;
+import org.apache.wicket.session.ISessionStore;
+import org.apache.wicket.util.IProvider;
+
+/**
+ *
+ * @author Visural
+ */
+public class TabsTest extends TestCase {
+
+    private static final Comparator<Tab> BY_ID = new Comparator<Tab>() {
+        public int compare(Tab a, Tab b) {
+            return a.getId().compareTo(b.getId());
+        }
+    };
+
+    private Application application;
+
+    @Override
+    protected void setUp() throws Exception {
+        application = new TestApplication();
+        ThreadContext.setApplication(application);
+        application.setName("tabs-test-" + getName());
+        application.initApplication();
+        ThreadContext.setSession(new Session(new MockWebRequest(Url.parse("/"))) {
+            @Override
+            public ClientInfo getClientInfo() {
+                return null;
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ThreadContext.detach();
+    }
+
+    public void testLazyWithComparatorRendersSelectedTab() {
+        Tab b = new Tab("b", "B");
+        Tab a = new Tab("a", "A");
+        Tabs tabs = new Tabs("tabs", b, a);
+        tabs.setLazy(true);
+        tabs.setComparator(BY_ID);
+        tabs.beforeRender();
+
+        assertSame(a, tabs.getSelected());
+        assertTrue(a.isVisibilityAllowed());
+        assertTrue(a.isLoaded());
+        assertFalse(b.isVisibilityAllowed());
+        assertFalse(b.isLoaded());
+    }
+
+    public void testSelectionFollowsTabWhenResorted() {
+        Tab b = new Tab("b", "B");
+        Tab a = new Tab("a", "A");
+        Tabs tabs = new Tabs("tabs", b, a);
+        tabs.setComparator(BY_ID);
+        tabs.setSelectedTabIndex(1);
+        assertSame(b, tabs.getSelected());
+
+        tabs.add(new Tab("0", "Zero"));
+        tabs.beforeRender();
+        assertSame(b, tabs.getSelected());
+    }
+
+    private static class TestApplication extends Application {
+
+        public TestApplication() {
+            setPageRendererProvider(new IPageRendererProvider() {
+                public PageRenderer get(RenderPageRequestHandler handler) {
+                    return null;
+                }
+            });
+            setRequestCycleProvider(new IRequestCycleProvider() {
+                public RequestCycle get(RequestCycleContext context) {
+                    return null;
+                }
+            });
+            setSessionStoreProvider(new IProvider<ISessionStore>() {
+                public ISessionStore get() {
+                    return null;
+                }
+            });
+            setPageManagerProvider(new IPageManagerProvider() {
+                public IPageManager get(IPageManagerContext context) {
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        public Class<? extends Page> getHomePage() {
+            return null;
+        }
+
+        @Override
+        public String getApplicationKey() {
+            return "tabs-test";
+        }
+
+        @Override
+        public RuntimeConfigurationType getConfigurationType() {
+            return RuntimeConfigurationType.DEPLOYMENT;
+        }
+
+        @Override
+        public Session newSession(Request request, Response response) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.model;
+
+import junit.framework.TestCase;
+import org.apache.wicket.ThreadContext;
+import org.apache.wicket.mock.MockWebRequest;
+import org.apache.wicket.request.IExceptionMapper;
+import org.apache.wicket.request.IRequestHandler;
+import org.apache.wicket.request.Url;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.cycle.RequestCycleContext;
+import org.apache.wicket.request.mapper.CompoundRequestMapper;
+import org.apache.wicket.response.StringResponse;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class KeyedBeanModelTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        newRequest();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ThreadContext.detach();
+    }
+
+    public void testLoad() {
+        CountingLoader loader = new CountingLoader();
+        KeyedBeanModel<Integer, String> model = KeyedBeanModel.ofKey(3, loader);
+        assertEquals(0, loader.loads);
+        assertEquals("bean3", model.getObject());
+        assertEquals("bean3", model.getObject());
+        assertEquals(1, loader.loads);
+        assertEquals(Integer.valueOf(3), model.getKey());
+    }
+
+    public void testOfBeanDoesNotLoad() {
+        CountingLoader loader = new CountingLoader();
+        KeyedBeanModel<Integer, String> model = KeyedBeanModel.ofBean("bean7", loader);
+        assertEquals(Integer.valueOf(7), model.getKey());
+        assertEquals("bean7", model.getObject());
+        assertEquals(0, loader.loads);
+    }
+
+    public void testDetachReloads() {
+        CountingLoader loader = new CountingLoader();
+        KeyedBeanModel<Integer, String> model = KeyedBeanModel.ofBean("bean7", loader);
+        model.detach();
+        newRequest();
+        assertEquals("bean7", model.getObject());
+        assertEquals(1, loader.loads);
+    }
+
+    public void testReuseWithinRequest() {
+        CountingLoader loader = new CountingLoader();
+        KeyedBeanModel<Integer, String> a = KeyedBeanModel.ofKey(1, loader);
+        KeyedBeanModel<Integer, String> b = KeyedBeanModel.ofKey(1, loader);
+        assertEquals("bean1", a.getObject());
+        assertEquals("bean1", b.getObject());
+        assertEquals(1, loader.loads);
+
+        // a separate loader instance does not share loaded beans
+        CountingLoader other = new CountingLoader();
+        assertEquals("bean1", KeyedBeanModel.ofKey(1, other).getObject());
+        assertEquals(1, other.loads);
+
+        // nor does a later request
+        a.detach();
+        newRequest();
+        assertEquals("bean1", a.getObject());
+        assertEquals(2, loader.loads);
+    }
+
+    private static void newRequest() {
+        ThreadContext.setRequestCycle(new RequestCycle(new RequestCycleContext(
+                new MockWebRequest(Url.parse("/")), new StringResponse(), new CompoundRequestMapper(),
+                new IExceptionMapper() {
+                    public IRequestHandler map(Exception e) {
+                        return null;
+                    }
+                })));
+    }
+
+    private static class CountingLoader implements IBeanLoader<Integer, String> {
+
+        private static final long serialVersionUID = 1L;
+        private int loads = 0;
+
+        public Integer getKey(String bean) {
+            return Integer.valueOf(bean.substring(4));
+        }
+
+        public String load(Integer key) {
+            loads++;
+            return "bean" + key;
+        }
+    }
+}
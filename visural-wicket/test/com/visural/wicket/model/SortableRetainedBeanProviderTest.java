@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 Richard Nichols.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.visural.wicket.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.wicket.extensions.markup.html.repeater.data.sort.SortOrder;
+
+/**
+ *
+ * @author Richard Nichols
+ */
+public class SortableRetainedBeanProviderTest extends TestCase {
+
+    public void testPagingSorted() {
+        SortableRetainedBeanProvider<Person, String> provider = new SortableRetainedBeanProvider<Person, String>(
+                people("carol", "alice", null, "bob", "dave"));
+        assertEquals(5, provider.size());
+        assertEquals("[carol, alice]", names(provider.iterator(0, 2)));
+
+        provider.setSort("name", SortOrder.ASCENDING);
+        assertEquals("[null, alice]", names(provider.iterator(0, 2)));
+        assertEquals("[bob, carol]", names(provider.iterator(2, 2)));
+        assertEquals("[dave]", names(provider.iterator(4, 2)));
+
+        provider.setSort("name", SortOrder.DESCENDING);
+        assertEquals("[dave, carol, bob]", names(provider.iterator(0, 3)));
+    }
+
+    public void testInvalidate() {
+        List<Person> list = people("b", "a");
+        SortableRetainedBeanProvider<Person, String> provider = new SortableRetainedBeanProvider<Person, String>(list);
+        provider.setSort("name", SortOrder.ASCENDING);
+        assertEquals("[a, b]", names(provider.iterator(0, 2)));
+        list.set(0, new Person("c"));
+        provider.invalidate();
+        assertEquals("[a, c]", names(provider.iterator(0, 2)));
+    }
+
+    public void testLoaderRetainsOnlyKeys() throws Exception {
+        PersonLoader loader = new PersonLoader();
+        List<Person> list = new ArrayList<Person>();
+        for (String name : new String[] {"b", "c", "a"}) {
+            list.add(loader.load(name));
+        }
+        SortableRetainedBeanProvider<Person, String> provider = new SortableRetainedBeanProvider<Person, String>(list);
+        provider.setBeanLoader(loader);
+        provider.setSort("name", SortOrder.ASCENDING);
+        assertEquals("[a, b, c]", names(provider.iterator(0, 3)));
+        assertSame(list, provider.getBeans());
+
+        provider.detach();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(provider);
+        out.close();
+        @SuppressWarnings("unchecked")
+        SortableRetainedBeanProvider<Person, String> copy = (SortableRetainedBeanProvider<Person, String>)
+                new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(3, copy.size());
+        assertEquals("[a, b]", names(copy.iterator(0, 2)));
+        assertNotSame(list.get(0), copy.getBeans().get(0));
+        assertEquals("b", copy.getBeans().get(0).getName());
+    }
+
+    private static List<Person> people(String... names) {
+        List<Person> result = new ArrayList<Person>();
+        for (String name : names) {
+            result.add(new Person(name));
+        }
+        return result;
+    }
+
+    private static String names(Iterator<? extends Person> it) {
+        List<String> result = new ArrayList<String>();
+        while (it.hasNext()) {
+            result.add(it.next().getName());
+        }
+        return Arrays.toString(result.toArray());
+    }
+
+    /**
+     * Loads beans which are not serializable, so serialization fails if any
+     * bean is retained.
+     */
+    private static class PersonLoader implements IBeanLoader<String, Person> {
+
+        private static final long serialVersionUID = 1L;
+
+        public String getKey(Person bean) {
+            return bean.getName();
+        }
+
+        public Person load(String key) {
+            return new UnserializablePerson(key);
+        }
+    }
+
+    private static class UnserializablePerson extends Person {
+
+        public UnserializablePerson(String name) {
+            super(name);
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            throw new NotSerializableException();
+        }
+    }
+
+    public static class Person implements Serializable {
+
+        private final String name;
+
+        public Person(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}